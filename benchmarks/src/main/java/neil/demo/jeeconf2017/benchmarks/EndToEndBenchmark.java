@@ -0,0 +1,258 @@
+package neil.demo.jeeconf2017.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import com.hazelcast.client.HazelcastClient;
+import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.MapIndexConfig;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.DAG;
+import com.hazelcast.jet.Jet;
+import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.config.JetConfig;
+
+import neil.demo.jeeconf2017.Constants;
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.MyDataSerializableFactory;
+import neil.demo.jeeconf2017.gesmes.GesmesReader;
+import neil.demo.jeeconf2017.jet.GesmesDAG;
+import neil.demo.jeeconf2017.jet.MaConfig;
+import neil.demo.jeeconf2017.jet.MaDAG;
+import neil.demo.jeeconf2017.util.BatchWriter;
+import neil.demo.jeeconf2017.util.HistoricCurrencyStorage;
+import neil.demo.jeeconf2017.util.MemoryReport;
+
+/**
+ * <P>Time loading and averaging a large history, for a cluster of one
+ * member, then two, and so on, all in this JVM. This is not a JMH
+ * benchmark, each step is seconds not nanoseconds, so run it directly.
+ * </P>
+ * <PRE>
+ * java -cp benchmarks/target/benchmarks.jar neil.demo.jeeconf2017.benchmarks.EndToEndBenchmark [years] [members] [currencies] [bases] [format]
+ * </PRE>
+ * <P>The defaults are 10 years, 1 to 3 members, 31 currencies,
+ * the Euro as the only base, and the {@code BINARY} in-memory format
+ * for the historic currency map. For each cluster size it times
+ * </P>
+ * <OL>
+ * <LI><P><B>Load</B> from a client, as
+ * {@code neil.demo.jeeconf2017.gesmes.GesmesLoader} does, reading
+ * generated GESMES XML with {@link GesmesReader} into a {@link BatchWriter}.
+ * Rates for other bases aren't in that format, so are added with the same
+ * {@link BatchWriter} directly. These are cross rates, several sources to
+ * the same target, so rely on {@link MaDAG} keeping a window per currency
+ * pair rather than per target currency.
+ * </P></LI>
+ * <LI><P><B>Jet load</B> of the same XML with {@link GesmesDAG}.
+ * </P></LI>
+ * <LI><P><B>Averages</B>, {@link MaDAG} for 50 and 200 day windows,
+ * with separate and with fused average vertices.
+ * </P></LI>
+ * </OL>
+ * <P>It also shows the heap in use once loaded, after a garbage collection,
+ * and the time spent in garbage collection during the load and averages.
+ * Compare runs with a different format, such as {@code OBJECT}, to see
+ * what it costs in heap and collection time, and gains in speed.
+ * </P>
+ * <P>Members are more JVM threads not more machines, so this shows how
+ * work is split and what it costs to split it, rather than the speed
+ * up a real cluster would get. Each size is timed once partition
+ * migration to the new member has finished.
+ * </P>
+ */
+public class EndToEndBenchmark {
+
+	private static final long SEED = 2017L;
+	private static final int[] WINDOWS = { 50, 200 };
+	private static final long NATIVE_MEGABYTES = 1024;
+
+	public static void main(String[] args) throws Exception {
+		int years = (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+		int members = (args.length > 1 ? Integer.parseInt(args[1]) : 3);
+		int currencies = (args.length > 2 ? Integer.parseInt(args[2]) : Currency.values().length - 1);
+		int bases = (args.length > 3 ? Integer.parseInt(args[3]) : 1);
+		InMemoryFormat inMemoryFormat = (args.length > 4 ? InMemoryFormat.valueOf(args[4]) : InMemoryFormat.BINARY);
+
+		SyntheticRates syntheticRates = new SyntheticRates(years, currencies, bases, SEED);
+
+		File file = File.createTempFile("eurofxref-synthetic-", ".xml");
+		file.deleteOnExit();
+		try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+			syntheticRates.writeGesmes(writer);
+		}
+
+		System.out.printf("%d years, %d currencies, %d bases: %,d rates, %,d in GESMES XML of %,d bytes, %s%n",
+				years, currencies, bases, syntheticRates.size(), syntheticRates.gesmesSize(), Files.size(file.toPath()),
+				inMemoryFormat);
+		System.out.printf("%-8s %12s %12s %12s %12s %12s %12s %12s%n",
+				"Members", "Rates", "Load ms", "Jet load ms", "Averages ms", "Fused ms", "Heap MB", "GC ms");
+
+		// Own cluster name, so as not to join any demo servers running
+		String groupName = "benchmark-" + UUID.randomUUID();
+		List<JetInstance> jetInstances = new ArrayList<>();
+
+		try {
+			for (int i = 1; i <= members; i++) {
+				jetInstances.add(Jet.newJetInstance(jetConfig(groupName, inMemoryFormat)));
+
+				HazelcastInstance hazelcastClient = HazelcastClient.newHazelcastClient(clientConfig(groupName));
+				JetInstance jetInstance = jetInstances.get(0);
+				// Partitions move to the new member in the background, don't time that
+				awaitClusterSafe(jetInstance);
+				try {
+					IMap<HistoricCurrencyKey, HistoricCurrency> historicCurrencyMap =
+							hazelcastClient.getMap(Constants.MAP_HISTORIC_CURRENCY);
+
+					clear(jetInstance);
+					long gcStartMs = MemoryReport.gcMillis();
+					long loadMs = load(file, syntheticRates, historicCurrencyMap);
+					int rates = historicCurrencyMap.size();
+
+					MaConfig maConfig = new MaConfig();
+					maConfig.setWindows(WINDOWS);
+					long averagesMs = execute(jetInstance, new MaDAG(maConfig));
+					maConfig.setFused(true);
+					long fusedMs = execute(jetInstance, new MaDAG(maConfig));
+					long gcMs = MemoryReport.gcMillis() - gcStartMs;
+
+					// What's left is mostly the maps, for all members as they share this JVM
+					System.gc();
+					long heapMb = MemoryReport.heapUsedMegabytes();
+
+					// Only Euro rates come from XML, so Jet load last
+					clear(jetInstance);
+					long jetLoadMs = execute(jetInstance, new GesmesDAG(file.toURI().toString(), Currency.EUR));
+
+					System.out.printf("%-8d %,12d %,12d %,12d %,12d %,12d %,12d %,12d%n",
+							i, rates, loadMs, jetLoadMs, averagesMs, fusedMs, heapMb, gcMs);
+				} finally {
+					hazelcastClient.shutdown();
+				}
+			}
+		} finally {
+			HazelcastClient.shutdownAll();
+			Jet.shutdownAll();
+		}
+	}
+
+	/**
+	 * <P>The client load, {@code GesmesLoader}'s loop on a local file
+	 * and then the other bases.
+	 * </P>
+	 */
+	private static long load(File file, SyntheticRates syntheticRates,
+			IMap<HistoricCurrencyKey, HistoricCurrency> historicCurrencyMap) throws Exception {
+		long start = System.nanoTime();
+
+		try (InputStream inputStream = new FileInputStream(file);
+			 GesmesReader gesmesReader = new GesmesReader(inputStream, Currency.EUR);
+			 BatchWriter<HistoricCurrencyKey, HistoricCurrency> batchWriter =
+					 new BatchWriter<>(historicCurrencyMap);) {
+
+			while (gesmesReader.next()) {
+				HistoricCurrencyKey historicCurrencyKey = new HistoricCurrencyKey();
+				historicCurrencyKey.setFrom(gesmesReader.getBase());
+				historicCurrencyKey.setTo(gesmesReader.getCurrency());
+				historicCurrencyKey.setDate(gesmesReader.getDate());
+
+				HistoricCurrency historicCurrency = new HistoricCurrency();
+				historicCurrency.setClose(gesmesReader.getRate());
+
+				batchWriter.add(historicCurrencyKey, historicCurrency);
+			}
+
+			syntheticRates.forEach((historicCurrencyKey, historicCurrency) -> {
+				if (historicCurrencyKey.getFrom() != Currency.EUR) {
+					batchWriter.add(historicCurrencyKey, historicCurrency);
+				}
+			});
+		}
+
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	private static long execute(JetInstance jetInstance, DAG dag) throws Exception {
+		long start = System.nanoTime();
+		jetInstance.newJob(dag).execute().get();
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+
+	/**
+	 * <P>Wait until no partitions are migrating and all backups are
+	 * in sync, so the new member holds its share before timing starts.
+	 * </P>
+	 */
+	private static void awaitClusterSafe(JetInstance jetInstance) throws InterruptedException {
+		while (!jetInstance.getHazelcastInstance().getPartitionService().isClusterSafe()) {
+			Thread.sleep(100L);
+		}
+	}
+
+	private static void clear(JetInstance jetInstance) {
+		for (String name : Arrays.asList(Constants.MAP_HISTORIC_CURRENCY,
+				Constants.MAP_SIMPLE_MOVING_AVERAGE, Constants.MAP_EXPONENTIAL_MOVING_AVERAGE)) {
+			jetInstance.getHazelcastInstance().getMap(name).clear();
+		}
+	}
+
+	/**
+	 * <P>As the server's {@code hazelcast.xml}, but a separate cluster,
+	 * and the historic currency map stored as the server's
+	 * {@code storage.in-memory-format} would. The same indexes too, so
+	 * the load includes the cost of keeping them up to date.
+	 * </P>
+	 */
+	private static JetConfig jetConfig(String groupName, InMemoryFormat inMemoryFormat) {
+		Config config = new Config();
+		config.getGroupConfig().setName(groupName);
+
+		JoinConfig joinConfig = config.getNetworkConfig().getJoin();
+		joinConfig.getMulticastConfig().setEnabled(false);
+		joinConfig.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+
+		config.getSerializationConfig().addDataSerializableFactory(
+				MyDataSerializableFactory.FACTORY_ID, new MyDataSerializableFactory());
+
+		config.getMapConfig(Constants.MAP_HISTORIC_CURRENCY)
+			.addMapIndexConfig(new MapIndexConfig("__key#to", false))
+			.addMapIndexConfig(new MapIndexConfig("__key#date", true));
+		HistoricCurrencyStorage.configure(config, inMemoryFormat, NATIVE_MEGABYTES);
+
+		JetConfig jetConfig = new JetConfig();
+		jetConfig.setHazelcastConfig(config);
+		return jetConfig;
+	}
+
+	/**
+	 * <P>As the client's {@code hazelcast-client.xml}, but for the cluster above.
+	 * </P>
+	 */
+	private static ClientConfig clientConfig(String groupName) {
+		ClientConfig clientConfig = new ClientConfig();
+		clientConfig.getGroupConfig().setName(groupName);
+		clientConfig.getNetworkConfig().addAddress("127.0.0.1");
+
+		clientConfig.getSerializationConfig().addDataSerializableFactory(
+				MyDataSerializableFactory.FACTORY_ID, new MyDataSerializableFactory());
+
+		return clientConfig;
+	}
+
+}
@@ -0,0 +1,102 @@
+package neil.demo.jeeconf2017.benchmarks;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import neil.demo.jeeconf2017.jet.PriceWindow;
+import neil.demo.jeeconf2017.util.FixedPoint;
+
+/**
+ * <P>Adding the newest price to a full window, the usual case, for the
+ * {@link PriceWindow} ring buffer against the {@link TreeSet} of objects
+ * it replaced.
+ * </P>
+ * <P>Both start from a {@link LocalDate} and {@link BigDecimal}, as read
+ * from the map, so conversion to their own form is included.
+ * </P>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PriceWindowBenchmark {
+
+	private static final BigDecimal[] CLOSES = {
+			new BigDecimal("0.8634"), new BigDecimal("0.8641"), new BigDecimal("0.8629"), new BigDecimal("0.8655") };
+
+	@Param({ "10", "50", "100", "200", "500" })
+	public int window;
+
+	private PriceWindow priceWindow;
+	private TreeSet<ClosingPrice> treeSet;
+	private long epochDay;
+
+	@Setup
+	public void setup() {
+		this.priceWindow = new PriceWindow(this.window);
+		this.treeSet = new TreeSet<>();
+		// Fill both, so every add displaces the oldest
+		for (int i = 0; i < this.window; i++) {
+			this.priceWindow();
+			this.treeSet();
+		}
+	}
+
+	@Benchmark
+	public boolean priceWindow() {
+		LocalDate date = LocalDate.ofEpochDay(this.epochDay++);
+		BigDecimal close = CLOSES[(int) (this.epochDay & 3)];
+
+		return this.priceWindow.add((int) date.toEpochDay(), FixedPoint.toLong(close));
+	}
+
+	@Benchmark
+	public boolean treeSet() {
+		LocalDate date = LocalDate.ofEpochDay(this.epochDay++);
+		BigDecimal close = CLOSES[(int) (this.epochDay & 3)];
+
+		boolean added = this.treeSet.add(new ClosingPrice(date, close));
+		if (this.treeSet.size() > this.window) {
+			this.treeSet.pollFirst();
+		}
+		return added;
+	}
+
+	/**
+	 * <P>The price object held in the {@link TreeSet}, as before
+	 * {@link PriceWindow}.
+	 * </P>
+	 */
+	@AllArgsConstructor
+	@Data
+	public static class ClosingPrice implements Comparable<ClosingPrice> {
+
+		private LocalDate	date;
+		private BigDecimal	rate;
+
+		// Comparable - Date only
+		@Override
+		public int compareTo(ClosingPrice that) {
+			return this.date.compareTo(that.getDate());
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package neil.demo.jeeconf2017.benchmarks;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hazelcast.internal.serialization.impl.DefaultSerializationServiceBuilder;
+import com.hazelcast.spi.serialization.SerializationService;
+
+import lombok.Data;
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.MyDataSerializableFactory;
+
+/**
+ * <P>Serialize and deserialize the historic currency key and value, with
+ * their {@link com.hazelcast.nio.serialization.IdentifiedDataSerializable IdentifiedDataSerializable}
+ * form against Java serialization of the same fields.
+ * </P>
+ * <P>The domain classes are no longer {@link Serializable}, so the Java
+ * serialization baseline uses copies of them as they were. Both go through
+ * the same Hazelcast serialization service, as they would in the cluster,
+ * which picks Java serialization for the copies. The serialized sizes are
+ * printed at setup.
+ * </P>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+	private SerializationService serializationService;
+	private HistoricCurrencyKey historicCurrencyKey;
+	private HistoricCurrency historicCurrency;
+	private JavaHistoricCurrencyKey javaHistoricCurrencyKey;
+	private JavaHistoricCurrency javaHistoricCurrency;
+
+	@Setup
+	public void setup() {
+		this.serializationService = new DefaultSerializationServiceBuilder()
+				.addDataSerializableFactory(MyDataSerializableFactory.FACTORY_ID, new MyDataSerializableFactory())
+				.build();
+
+		LocalDate date = LocalDate.of(2017, 5, 24);
+		BigDecimal close = new BigDecimal("0.8634");
+
+		this.historicCurrencyKey = new HistoricCurrencyKey();
+		this.historicCurrencyKey.setFrom(Currency.EUR);
+		this.historicCurrencyKey.setTo(Currency.GBP);
+		this.historicCurrencyKey.setDate(date);
+		this.historicCurrency = new HistoricCurrency();
+		this.historicCurrency.setClose(close);
+
+		this.javaHistoricCurrencyKey = new JavaHistoricCurrencyKey();
+		this.javaHistoricCurrencyKey.setFrom(Currency.EUR);
+		this.javaHistoricCurrencyKey.setTo(Currency.GBP);
+		this.javaHistoricCurrencyKey.setDate(date);
+		this.javaHistoricCurrency = new JavaHistoricCurrency();
+		this.javaHistoricCurrency.setClose(close);
+
+		System.out.printf("%nSerialized bytes: key %d (Java %d), value %d (Java %d)%n",
+				this.serializationService.toData(this.historicCurrencyKey).totalSize(),
+				this.serializationService.toData(this.javaHistoricCurrencyKey).totalSize(),
+				this.serializationService.toData(this.historicCurrency).totalSize(),
+				this.serializationService.toData(this.javaHistoricCurrency).totalSize());
+	}
+
+	@Benchmark
+	public Object keyIdentified() {
+		return this.serializationService.toObject(this.serializationService.toData(this.historicCurrencyKey));
+	}
+
+	@Benchmark
+	public Object keyJava() {
+		return this.serializationService.toObject(this.serializationService.toData(this.javaHistoricCurrencyKey));
+	}
+
+	@Benchmark
+	public Object valueIdentified() {
+		return this.serializationService.toObject(this.serializationService.toData(this.historicCurrency));
+	}
+
+	@Benchmark
+	public Object valueJava() {
+		return this.serializationService.toObject(this.serializationService.toData(this.javaHistoricCurrency));
+	}
+
+	/**
+	 * <P>{@link HistoricCurrencyKey} with Java serialization.
+	 * </P>
+	 */
+	@Data
+	@SuppressWarnings("serial")
+	public static class JavaHistoricCurrencyKey implements Serializable {
+		private Currency	from;
+		private Currency	to;
+		private LocalDate	date;
+	}
+
+	/**
+	 * <P>{@link HistoricCurrency} with Java serialization.
+	 * </P>
+	 */
+	@Data
+	@SuppressWarnings("serial")
+	public static class JavaHistoricCurrency implements Serializable {
+		private BigDecimal	close;
+	}
+
+}
@@ -0,0 +1,183 @@
+package neil.demo.jeeconf2017.benchmarks;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import neil.demo.jeeconf2017.Constants;
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+
+/**
+ * <P>Generate exchange rates, as many years and currencies as needed,
+ * to test with more data than the 90 day file has.
+ * </P>
+ * <P>Each currency's rate against the Euro is a random walk, one step
+ * per weekday. Rates from other base currencies are the cross rates,
+ * so for example {@code GBP->USD} is {@code EUR->USD / EUR->GBP}
+ * on the same day. The same seed gives the same rates.
+ * </P>
+ * <P>The Euro rates can be written as GESMES XML, the format the European
+ * Central Bank publishes, for the loaders. All rates, including those from
+ * other bases, can be produced as map entries.
+ * </P>
+ */
+public class SyntheticRates {
+
+	// Fixed, so results don't depend on when run
+	private static final LocalDate END = LocalDate.of(2017, 5, 24);
+	// Daily change, standard deviation
+	private static final double VOLATILITY = 0.005;
+
+	private final List<LocalDate> dates = new ArrayList<>();
+	private final List<Currency> bases;
+	private final List<Currency> targets;
+	private final long seed;
+
+	/**
+	 * @param years Of weekday rates, ending 2017-05-24
+	 * @param currencies Target currencies, other than the Euro
+	 * @param bases Base currencies, the Euro then the first targets, from 1 to one more than the targets
+	 * @param seed For the random walk
+	 * @throws IllegalArgumentException If there aren't that many currencies to be bases
+	 */
+	public SyntheticRates(int years, int currencies, int bases, long seed) {
+		for (LocalDate date = END.minusYears(years).plusDays(1); !date.isAfter(END); date = date.plusDays(1)) {
+			if (date.getDayOfWeek() != DayOfWeek.SATURDAY && date.getDayOfWeek() != DayOfWeek.SUNDAY) {
+				this.dates.add(date);
+			}
+		}
+		this.targets = Arrays.stream(Currency.values())
+				.filter(currency -> currency != Currency.EUR)
+				.limit(currencies)
+				.collect(Collectors.toList());
+		if (bases < 1 || bases > this.targets.size() + 1) {
+			throw new IllegalArgumentException("Bases must be from 1 to " + (this.targets.size() + 1) + ", not " + bases);
+		}
+		this.bases = new ArrayList<>();
+		this.bases.add(Currency.EUR);
+		this.bases.addAll(this.targets.subList(0, bases - 1));
+		this.seed = seed;
+	}
+
+	/**
+	 * @return How many rates {@link #forEach} produces
+	 */
+	public long size() {
+		// A base's rate to itself is left out, and its rate to the Euro put in
+		return (long) this.dates.size() * this.bases.size() * this.targets.size();
+	}
+
+	/**
+	 * @return How many rates {@link #writeGesmes} writes, the Euro based ones
+	 */
+	public long gesmesSize() {
+		return (long) this.dates.size() * this.targets.size();
+	}
+
+	/**
+	 * <P>Produce every rate, date by date, from every base to every
+	 * other currency.
+	 * </P>
+	 *
+	 * @param consumer Given each key and value, both newly created
+	 */
+	public void forEach(BiConsumer<HistoricCurrencyKey, HistoricCurrency> consumer) {
+		this.walk((date, euroRates) -> {
+			for (Currency base : this.bases) {
+				double baseRate = (base == Currency.EUR ? 1d : euroRates[this.targets.indexOf(base)]);
+				for (int i = 0; i < this.targets.size(); i++) {
+					Currency target = (this.targets.get(i) == base ? Currency.EUR : this.targets.get(i));
+					double rate = (target == Currency.EUR ? 1d / baseRate : euroRates[i] / baseRate);
+
+					HistoricCurrencyKey historicCurrencyKey = new HistoricCurrencyKey();
+					historicCurrencyKey.setFrom(base);
+					historicCurrencyKey.setTo(target);
+					historicCurrencyKey.setDate(date);
+
+					HistoricCurrency historicCurrency = new HistoricCurrency();
+					historicCurrency.setClose(SyntheticRates.round(rate));
+
+					consumer.accept(historicCurrencyKey, historicCurrency);
+				}
+			}
+		});
+	}
+
+	/**
+	 * <P>Write the Euro based rates in the European Central Bank's format,
+	 * newest date first as they do.
+	 * </P>
+	 *
+	 * @param writer Not closed
+	 */
+	public void writeGesmes(Writer writer) {
+		List<String> cubes = new ArrayList<>();
+		this.walk((date, euroRates) -> {
+			StringBuilder cube = new StringBuilder();
+			cube.append("<Cube time=\"").append(date).append("\">\n");
+			for (int i = 0; i < this.targets.size(); i++) {
+				cube.append("<Cube currency=\"").append(this.targets.get(i).name())
+					.append("\" rate=\"").append(SyntheticRates.round(euroRates[i]).toPlainString()).append("\"/>\n");
+			}
+			cube.append("</Cube>\n");
+			cubes.add(cube.toString());
+		});
+
+		PrintWriter printWriter = new PrintWriter(writer);
+		printWriter.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		printWriter.println("<gesmes:Envelope xmlns:gesmes=\"" + Constants.XML_NAMESPACE_GESMES
+				+ "\" xmlns=\"" + Constants.XML_NAMESPACE_ECB + "\">");
+		printWriter.println("<gesmes:subject>Reference rates</gesmes:subject>");
+		printWriter.println("<Cube>");
+		for (int i = cubes.size() - 1; i >= 0; i--) {
+			printWriter.print(cubes.get(i));
+		}
+		printWriter.println("</Cube>");
+		printWriter.println("</gesmes:Envelope>");
+		printWriter.flush();
+	}
+
+	/**
+	 * <P>Step every Euro rate through the dates.
+	 * </P>
+	 */
+	private void walk(BiConsumer<LocalDate, double[]> consumer) {
+		Random random = new Random(this.seed);
+
+		double[] euroRates = new double[this.targets.size()];
+		for (int i = 0; i < euroRates.length; i++) {
+			// Spread like real rates, less than one for GBP to thousands for IDR
+			euroRates[i] = Math.exp(Math.log(0.5) + random.nextDouble() * Math.log(30_000));
+		}
+
+		for (LocalDate date : this.dates) {
+			for (int i = 0; i < euroRates.length; i++) {
+				euroRates[i] *= 1 + random.nextGaussian() * VOLATILITY;
+			}
+			consumer.accept(date, euroRates);
+		}
+	}
+
+	/**
+	 * <P>Five significant figures, as the European Central Bank publishes,
+	 * but no more than five decimal places.
+	 * </P>
+	 */
+	private static BigDecimal round(double rate) {
+		BigDecimal bigDecimal = new BigDecimal(rate);
+		int scale = Math.min(5, Math.max(0, 4 - (int) Math.floor(Math.log10(rate))));
+		return bigDecimal.setScale(scale, RoundingMode.HALF_UP);
+	}
+
+}
@@ -0,0 +1,69 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neil.demo.jeeconf2017.domain.AverageKey;
+import neil.demo.jeeconf2017.domain.Currency;
+
+/**
+ * <P>{@link SmaProcessor#tryProcess} and {@link EmaProcessor#tryProcess}
+ * for one currency's full window, at a range of window sizes.
+ * </P>
+ * <P>The window keeps running totals, so the expectation is that the
+ * time doesn't grow with the window size.
+ * </P>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AverageBenchmark {
+
+	@Param({ "10", "50", "100", "200", "500" })
+	public int window;
+
+	private SmaProcessor smaProcessor;
+	private EmaProcessor emaProcessor;
+	private Map.Entry<AverageKey, PriceWindow> entry;
+
+	@Setup
+	public void setup() {
+		this.smaProcessor = new SmaProcessor();
+		this.emaProcessor = new EmaProcessor();
+
+		PriceWindow priceWindow = new PriceWindow(this.window);
+		for (int date = 0; date < this.window; date++) {
+			priceWindow.add(date, 863_400L + (date % 7) * 100L);
+		}
+
+		this.entry = new AbstractMap.SimpleImmutableEntry<>(new AverageKey(Currency.EUR, Currency.GBP, this.window), priceWindow);
+	}
+
+	@Benchmark
+	public boolean sma() throws IOException {
+		return this.smaProcessor.tryProcess(0, this.entry);
+	}
+
+	@Benchmark
+	public boolean ema() throws IOException {
+		return this.emaProcessor.tryProcess(0, this.entry);
+	}
+
+}
@@ -0,0 +1,89 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+
+/**
+ * <P>{@link LastNProcessor#tryProcess} for one map entry, as when run as a
+ * batch job so nothing is emitted until the end.
+ * </P>
+ * <P>Entries cycle through every target currency, moving on a day each
+ * time round, so each is the newest price for its currency like a map
+ * read in date order.
+ * </P>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LastNProcessorBenchmark {
+
+	@Param({ "10", "10,20,50,100,200" })
+	public String windows;
+
+	private LastNProcessor<?, ?> lastNProcessor;
+	private Map.Entry<HistoricCurrencyKey, HistoricCurrency>[] entries;
+	private int next;
+	private long epochDay;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		int[] last = Arrays.stream(this.windows.split(",")).mapToInt(Integer::parseInt).toArray();
+		this.lastNProcessor = new LastNProcessor<>(last, false);
+
+		Currency[] targets = Arrays.stream(Currency.values())
+				.filter(currency -> currency != Currency.EUR)
+				.toArray(Currency[]::new);
+
+		this.entries = new Map.Entry[targets.length];
+		for (int i = 0; i < targets.length; i++) {
+			HistoricCurrencyKey historicCurrencyKey = new HistoricCurrencyKey();
+			historicCurrencyKey.setFrom(Currency.EUR);
+			historicCurrencyKey.setTo(targets[i]);
+			historicCurrencyKey.setDate(LocalDate.ofEpochDay(0));
+
+			HistoricCurrency historicCurrency = new HistoricCurrency();
+			historicCurrency.setClose(BigDecimal.valueOf(10_000 + i, 4));
+
+			this.entries[i] = new AbstractMap.SimpleImmutableEntry<>(historicCurrencyKey, historicCurrency);
+		}
+	}
+
+	@Benchmark
+	public boolean tryProcess() throws IOException {
+		if (this.next == this.entries.length) {
+			// Next day for every currency, keys are mutable so reuse them
+			this.next = 0;
+			LocalDate date = LocalDate.ofEpochDay(++this.epochDay);
+			for (Map.Entry<HistoricCurrencyKey, HistoricCurrency> entry : this.entries) {
+				entry.getKey().setDate(date);
+			}
+		}
+		return this.lastNProcessor.tryProcess(0, this.entries[this.next++]);
+	}
+
+}
@@ -24,8 +24,10 @@ public class MyClientConfig {
 
     /**
      * <P>Create a marshaller {@code @Bean} though we'll only
-     * use unmarshall - ({@code XML} to {@code Java}). Use
-     * this to parse the XML from the European Central Bank
+     * use unmarshall - ({@code XML} to {@code Java}). This
+     * parses the XML from the European Central Bank into
+     * objects, for checking the format. Loading uses the
+     * streaming {@link neil.demo.jeeconf2017.gesmes.GesmesReader GesmesReader}.
      * </P>
      * <P>Embed this bean in an inner class, so that {@link GesmesTest}
      * can test only the parsing without having to mock the Hazelcast
@@ -1,23 +1,33 @@
 package neil.demo.jeeconf2017.controller;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 
+import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.jet.DAG;
-import com.hazelcast.jet.JetInstance;
-import com.hazelcast.jet.Job;
 
 import lombok.extern.slf4j.Slf4j;
 import neil.demo.jeeconf2017.Constants;
+import neil.demo.jeeconf2017.domain.Currency;
 import neil.demo.jeeconf2017.domain.CurrencyAverage;
+import neil.demo.jeeconf2017.domain.CurrencyPair;
+import neil.demo.jeeconf2017.domain.VertexMetrics;
+import neil.demo.jeeconf2017.jet.MaConfig;
 import neil.demo.jeeconf2017.jet.MaDAG;
+import neil.demo.jeeconf2017.jet.ProcessorMetrics;
+import neil.demo.jeeconf2017.job.JobRunner;
+import neil.demo.jeeconf2017.job.JobStatus;
 import neil.demo.jeeconf2017.util.AverageFormatter;
 import neil.demo.jeeconf2017.util.ReflectionUtil;
 
@@ -25,13 +35,24 @@ import neil.demo.jeeconf2017.util.ReflectionUtil;
  * <P>A controller to handle the averages operations:
  * </P>
  * <OL>
+ * <LI><P>{@code continuous} - Start or stop the Moving Averages DAG running
+ * continuously, updating the averages as prices change.
+ * </P></LI>
  * <LI><P>{@code exponential} - Return the calculated exponential moving averages
  * to the screen.
+ * <LI><P>{@code metrics} - Show counts and timings for each stage of the last run.
+ * </P></LI>
  * <LI><P>{@code simple} - Return the calculated simple moving averages
  * to the screen.
  * </P></LI>
- * <LI><P>{@code start} - Run and time the execution of the Moving Averages DAG.
+ * <LI><P>{@code start} - Submit the Moving Averages DAG, without waiting for it.
+ * </P></LI>
+ * <LI><P>{@code status} - Show how a submitted job is getting on, and how long it took.
  * </P></LI>
+ * </OL>
+ * <P>Only one run of the Moving Averages DAG, continuous or not, is allowed at a time,
+ * as they would write to the same maps.
+ * </P>
  */
 @Controller
 @RequestMapping("average")
@@ -41,7 +62,73 @@ public class AverageController {
 	@Autowired
 	private AverageFormatter averageFormatter;
 	@Autowired
-	private JetInstance jetInstance;
+	private HazelcastInstance hazelcastInstance;
+	@Autowired
+	private JobRunner jobRunner;
+	@Value("${average.fixed-point:false}")
+	private boolean fixedPoint;
+	@Value("${average.fused:false}")
+	private boolean fused;
+	@Value("${currency.by-month:false}")
+	private boolean byMonth;
+
+	private static final String JOB_NAME = MaDAG.class.getSimpleName();
+	private static final String CONTINUOUS = "continuous";
+	private static final String PAIRS = "pairs";
+	private static final String SERIES = "series";
+	private static final String SINCE = "since";
+
+	private Long continuousJobId;
+
+    /**
+     * <P>Start or stop the continuous version of the Jet job. This
+     * doesn't wait, a continuous job only ends when cancelled.
+     * </P>
+     * 
+     * @param j_continuous "start", "stop" or absent just to show status
+     * @return A page with model attributes to show.
+     */
+    @GetMapping("continuous")
+    public synchronized ModelAndView continuous(@RequestParam(name="j_continuous", required=false) String j_continuous) {
+            
+            ModelAndView modelAndView = 
+                            new ModelAndView("average/continuous");
+
+            try {
+                if ("start".equals(j_continuous) && this.continuousJobId == null) {
+                    MaConfig maConfig = new MaConfig();
+                    maConfig.setContinuous(true);
+                    maConfig.setFixedPoint(this.fixedPoint);
+                    maConfig.setFused(this.fused);
+
+                    DAG dag = new MaDAG(maConfig);
+
+                    this.continuousJobId = this.jobRunner.submit(JOB_NAME, CONTINUOUS, dag, this::resetMetrics).getId();
+                }
+                if ("stop".equals(j_continuous) && this.continuousJobId != null) {
+                    this.jobRunner.cancel(this.continuousJobId);
+
+                    this.continuousJobId = null;
+                }
+            } catch (Exception e) {
+                log.error("continuous", e);
+                modelAndView.addObject("j_error", e.getMessage());
+            }
+
+            // Job could have failed by itself
+            JobStatus jobStatus = (this.continuousJobId == null ? null : this.jobRunner.get(this.continuousJobId));
+            if (jobStatus != null && !jobStatus.isRunning()) {
+                log.warn("continuous job ended after {}", jobStatus.getElapsed());
+                this.continuousJobId = null;
+                jobStatus = null;
+            }
+
+            if (jobStatus != null) {
+                modelAndView.addObject("j_elapsed", jobStatus.getElapsed().toString());
+            }
+
+            return modelAndView;
+    }
 
     /**
      * <P>Retrieve the exponential moving averages.
@@ -65,6 +152,28 @@ public class AverageController {
 
     
 
+    /**
+     * <P>Retrieve the metrics for each vertex, totalled across all members.
+     * </P>
+     * 
+     * @return A page with model attributes to show.
+     */
+    @GetMapping("metrics")
+    public ModelAndView metrics() {
+            
+            ModelAndView modelAndView = 
+                            new ModelAndView("average/metrics");
+
+            Map<String, VertexMetrics> metricsMap = this.hazelcastInstance.getMap(Constants.MAP_METRICS);
+
+            modelAndView.addObject("columns", ReflectionUtil.getColumns(VertexMetrics.class));
+            modelAndView.addObject("data" 
+                            ,ReflectionUtil.getData(new TreeSet<>(metricsMap.values())
+                            						,VertexMetrics.class));
+            
+            return modelAndView;
+    }
+
 	/**
      * <P>Retrieve the simple moving averages.
      * </P>
@@ -86,48 +195,145 @@ public class AverageController {
     }
 
     /**
-     * <P>Initiate the Jet job and wait for the answer.
-     * Treat zero as a fault.
+     * <P>Submit the Jet job, and go to the status page to
+     * watch it rather than wait here.
+     * </P>
+     * <P>The job's description is the options as words, such as
+     * "{@code 10,20 series since 2017-05-01 pairs EURUSD}", which the
+     * status page sends back as {@code j_rerun} to run it again.
      * </P>
      * 
-     * @param j_last The last 10 results, or some other number
-     * @return Render same page, enriched
+     * @param j_last The last 10 results, or some other number, or a comma separated list of numbers
+     * @param j_series Present to calculate the averages as at every date, not just the latest
+     * @param j_since Only use prices from this date, {@code yyyy-mm-dd}, if not blank
+     * @param j_pairs Only use these currency pairs, such as {@code EURUSD,EURGBP}, if not blank
+     * @param j_rerun The description of an earlier job, instead of the above
+     * @return Redirect to status, or render same page with an error
      */
     @GetMapping("start")
-    public ModelAndView start(@RequestParam(name="j_last", required=false) String j_last) {
+    public ModelAndView start(@RequestParam(name="j_last", required=false) String j_last,
+    		@RequestParam(name="j_series", required=false) String j_series,
+    		@RequestParam(name="j_since", required=false) String j_since,
+    		@RequestParam(name="j_pairs", required=false) String j_pairs,
+    		@RequestParam(name="j_rerun", required=false) String j_rerun) {
             
             ModelAndView modelAndView = 
                             new ModelAndView("average/start");
 
+            if (j_rerun != null) {
+            	String[] words = j_rerun.split(" ");
+            	j_last = words[0];
+            	for (int i = 1; i < words.length; i++) {
+            		if (SERIES.equals(words[i])) {
+            			j_series = SERIES;
+            		}
+            		if (SINCE.equals(words[i]) && i + 1 < words.length) {
+            			j_since = words[++i];
+            		}
+            		if (PAIRS.equals(words[i]) && i + 1 < words.length) {
+            			j_pairs = words[++i];
+            		}
+            	}
+            }
+
     		if (j_last==null) {
-    			// First page render, show "Load" button but do not processing
+    			// First page render, show "Run" button but do not processing
     		} else {
-    			// Second page render, assume "Load" button pressed so do processing 
-    			
-    			Instant start = Instant.now();
+    			// Second page render, assume "Run" button pressed so do processing 
 
                 try {
-                    int count = Integer.valueOf(j_last.trim());
+                    int[] windows = Arrays.stream(j_last.split(","))
+                    		.mapToInt(window -> Integer.valueOf(window.trim()))
+                    		.toArray();
 
-                    DAG dag = new MaDAG(count);
-                    
-                    Job job = this.jetInstance.newJob(dag);
-                    
-                    job.execute().get();
+                    MaConfig maConfig = new MaConfig();
+                    maConfig.setWindows(windows);
+                    maConfig.setFixedPoint(this.fixedPoint);
+                    maConfig.setFused(this.fused);
+                    maConfig.setSeries(j_series != null);
+                    maConfig.setByMonth(this.byMonth);
+
+                    StringBuilder description = new StringBuilder(j_last.replace(" ", ""));
+                    if (maConfig.isSeries()) {
+                    	description.append(" ").append(SERIES);
+                    }
+                    if (j_since != null && !j_since.trim().isEmpty()) {
+                    	maConfig.setSince(LocalDate.parse(j_since.trim()));
+                    	description.append(" ").append(SINCE).append(" ").append(maConfig.getSince());
+                    }
+                    if (j_pairs != null && !j_pairs.trim().isEmpty()) {
+                    	maConfig.setPairs(AverageController.parsePairs(j_pairs));
+                    	description.append(" ").append(PAIRS).append(" ").append(j_pairs.replace(" ", "").toUpperCase());
+                    }
+
+                    DAG dag = new MaDAG(maConfig);
                     
-        			Duration elapsed = Duration.between(start, Instant.now());
+                    JobStatus jobStatus = this.jobRunner.submit(JOB_NAME, description.toString(), dag, this::resetMetrics);
                     
-                    // Zero means failed
-                    if (!elapsed.equals(Duration.ZERO)) {
-                            modelAndView.addObject("j_elapsed", elapsed.toString());
-                    }
-                    modelAndView.addObject("j_last", j_last);
+                    return new ModelAndView("redirect:/average/status?j_id=" + jobStatus.getId());
 
                 } catch (Exception e) {
                     log.error("start", e);
+                    modelAndView.addObject("j_error", e.getMessage());
                 }
-    			
+                modelAndView.addObject("j_last", j_last);
+                modelAndView.addObject("j_series", j_series != null);
+                modelAndView.addObject("j_since", j_since);
+                modelAndView.addObject("j_pairs", j_pairs);
+    		}
+
+            return modelAndView;
+    }
+
+    /**
+     * <P>Turn "{@code EURUSD,EURGBP}" into currency pairs.
+     * </P>
+     *
+     * @param pairs Comma separated, each two currency codes run together
+     * @return The pairs
+     */
+    private static Set<CurrencyPair> parsePairs(String pairs) {
+    	Set<CurrencyPair> currencyPairs = new TreeSet<>();
+    	for (String pair : pairs.split(",")) {
+    		String codes = pair.trim().toUpperCase();
+    		if (codes.length() != 6) {
+    			throw new IllegalArgumentException("Currency pair '" + pair.trim() + "' should be 6 letters, such as EURUSD");
     		}
+    		currencyPairs.add(CurrencyPair.of(Currency.valueOf(codes.substring(0, 3)), Currency.valueOf(codes.substring(3))));
+    	}
+    	return currencyPairs;
+    }
+
+    /**
+     * <P>Metrics are totals, so reset this job's before a run to see the
+     * figures for that run only. Those of a Jet load, which may still be
+     * running, are left alone.
+     * </P>
+     */
+    private void resetMetrics() {
+    	ProcessorMetrics.reset(this.hazelcastInstance, MaDAG.METRICS_VERTICES);
+    }
+
+    /**
+     * <P>Show a job's progress. The page refreshes itself
+     * while the job is running.
+     * </P>
+     * 
+     * @param j_id From submission, or absent for the latest
+     * @return The page to render, and the job status if known
+     */
+    @GetMapping("status")
+    public ModelAndView status(@RequestParam(name="j_id", required=false) Long j_id) {
+
+            ModelAndView modelAndView = 
+                            new ModelAndView("average/status");
+
+            JobStatus jobStatus = (j_id == null ? this.jobRunner.latest(JOB_NAME) : this.jobRunner.get(j_id));
+
+            if (jobStatus != null) {
+                modelAndView.addObject("j_status", jobStatus);
+                modelAndView.addObject("j_elapsed", jobStatus.getElapsed().toString());
+            }
 
             return modelAndView;
     }
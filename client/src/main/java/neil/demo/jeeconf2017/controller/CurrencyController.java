@@ -2,13 +2,15 @@ package neil.demo.jeeconf2017.controller;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.Collection;
-import java.util.Map;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -17,6 +19,10 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
 
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.ReplicatedMap;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
 
 import lombok.extern.slf4j.Slf4j;
 import neil.demo.jeeconf2017.Constants;
@@ -25,8 +31,17 @@ import neil.demo.jeeconf2017.domain.CurrencyPair;
 import neil.demo.jeeconf2017.domain.CurrencyPrice;
 import neil.demo.jeeconf2017.domain.HistoricCurrency;
 import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthKey;
 import neil.demo.jeeconf2017.domain.Price;
+import neil.demo.jeeconf2017.domain.VertexMetrics;
 import neil.demo.jeeconf2017.gesmes.GesmesLoader;
+import neil.demo.jeeconf2017.jet.GesmesDAG;
+import neil.demo.jeeconf2017.jet.GesmesProcessor;
+import neil.demo.jeeconf2017.jet.ProcessorMetrics;
+import neil.demo.jeeconf2017.job.JobRunner;
+import neil.demo.jeeconf2017.job.JobStatus;
+import neil.demo.jeeconf2017.util.FixedPoint;
 import neil.demo.jeeconf2017.util.ReflectionUtil;
 
 /**
@@ -38,7 +53,10 @@ import neil.demo.jeeconf2017.util.ReflectionUtil;
  * </P></LI>
  * <LI><P>{@code load} - Load historic currency data from the European
  * Central Bank, up to 90 days worth of closing prices for 30 currencies
- * compared to the Euro.
+ * compared to the Euro. Either parsed here in the client, or by a Jet
+ * job that has each server load a share.
+ * </P></LI>
+ * <LI><P>{@code status} - Show how a Jet load is getting on.
  * </P></LI>
  * <LI><P>{@code view} - Display the detail for a currency pair, the
  * list of closing prices.
@@ -53,32 +71,36 @@ public class CurrencyController {
 	private GesmesLoader gesmesLoader;
 	@Autowired
 	private HazelcastInstance hazelcastInstance;
+	@Autowired
+	private JobRunner jobRunner;
+	@Value("${currency.by-month:false}")
+	private boolean byMonth;
+	@Value("${gesmes.base:EUR}")
+	private Currency base;
+
+	private static final String JOB_NAME = GesmesDAG.class.getSimpleName();
 
 	/**
 	 * <P>
 	 * Use a helper to find the column headers for an HTML table, and the same
 	 * for the column data.
 	 * </P>
+	 * <P>
+	 * The pairs come from the catalogue that the servers maintain as prices
+	 * are added, so this reads one entry per pair rather than every key in
+	 * the historic currency map.
+	 * </P>
 	 * 
 	 * @return The page to render and some objects for it
 	 */
 	@GetMapping("list")
 	public ModelAndView list() {
 
-		// Treat Hazelcast's IMap as Java standard map
-		Map<HistoricCurrencyKey, HistoricCurrency> historicCurrencyMap
-			= this.hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY);
-		
-		// Only obtain the keys into the client from the cluster
-		Stream<HistoricCurrencyKey> historicCurrencyKeys = historicCurrencyMap.keySet().stream();
+		ReplicatedMap<CurrencyPair, Boolean> currencyPairMap
+			= this.hazelcastInstance.getReplicatedMap(Constants.REPLICATED_MAP_CURRENCY_PAIR);
 		
-		// Form unique pairs of source/target currency
-		Collection<CurrencyPair> currencyPairs = 
-				historicCurrencyKeys
-				.map(historicCurrencyKey -> 
-					new CurrencyPair(historicCurrencyKey.getFrom(), historicCurrencyKey.getTo())
-				)
-				.collect(Collectors.toCollection(TreeSet::new));
+		// Sort by source/target currency
+		Collection<CurrencyPair> currencyPairs = new TreeSet<>(currencyPairMap.keySet());
 		
 		ModelAndView modelAndView = new ModelAndView("currency/list");
 
@@ -92,17 +114,35 @@ public class CurrencyController {
 	 * <P>Run the Gesmes loader, which will put data into Hazelcast
 	 * and return the count of the number of objects.
 	 * </P>
+	 * <P>Or, if {@code j_jet} is set, submit a {@link GesmesDAG} so the
+	 * servers load the saved copy of the data themselves. This doesn't wait
+	 * for the job, but goes to the status page to follow it.
+	 * </P>
 	 * 
 	 * @param j_load A hidden object, used as a flag for page display
-	 * @return The page to render and some objects for it
+	 * @param j_jet A hidden object, set to load with Jet
+	 * @return The page to render and some objects for it, or redirect to status
 	 */
 	@GetMapping("load")
-	public ModelAndView load(@RequestParam(name="j_load", required=false) String j_load) {
+	public ModelAndView load(@RequestParam(name="j_load", required=false) String j_load,
+			@RequestParam(name="j_jet", required=false) String j_jet) {
 
 		ModelAndView modelAndView = new ModelAndView("currency/load");
 
 		if (j_load==null) {
 			// First page render, show "Load" button but do not processing
+		} else if (j_jet!=null) {
+			// Second page render, "Load via Jet" pressed so submit and follow it
+			try {
+				GesmesDAG dag = new GesmesDAG("classpath:" + Constants.ECB_90DAY_HISTORY_XML_SAVED, this.base, this.byMonth);
+
+				JobStatus jobStatus = this.jobRunner.submit(JOB_NAME, Constants.ECB_90DAY_HISTORY_XML_SAVED, dag, this::resetMetrics);
+
+				return new ModelAndView("redirect:/currency/status?j_id=" + jobStatus.getId());
+			} catch (Exception exception) {
+				log.error("load()", exception);
+				modelAndView.addObject("j_error", exception.getMessage());
+			}
 		} else {
 			// Second page render, assume "Load" button pressed so do processing 
 			
@@ -124,37 +164,91 @@ public class CurrencyController {
 		return modelAndView;
 	}
 
+	/**
+	 * <P>Show how a Jet load is getting on. The page refreshes itself
+	 * while the job is running.
+	 * </P>
+	 * <P>The count is of the rates the job has read and sent to be written,
+	 * as counted by each {@link GesmesProcessor}, not the size of the map,
+	 * which would include anything already there.
+	 * </P>
+	 *
+	 * @param j_id From submission, or absent for the latest
+	 * @return The page to render, and the job status if known
+	 */
+	@GetMapping("status")
+	public ModelAndView status(@RequestParam(name="j_id", required=false) Long j_id) {
+
+		ModelAndView modelAndView = new ModelAndView("currency/status");
+
+		JobStatus jobStatus = (j_id == null ? this.jobRunner.latest(JOB_NAME) : this.jobRunner.get(j_id));
+
+		if (jobStatus != null) {
+			IMap<String, VertexMetrics> metricsMap = this.hazelcastInstance.getMap(Constants.MAP_METRICS);
+			VertexMetrics vertexMetrics = metricsMap.get(GesmesProcessor.class.getSimpleName());
+
+			modelAndView.addObject("j_status", jobStatus);
+			modelAndView.addObject("j_elapsed", jobStatus.getElapsed().toString());
+			modelAndView.addObject("j_load", (vertexMetrics == null ? 0 : vertexMetrics.getItemsOut()));
+		}
+
+		return modelAndView;
+	}
+
+	/**
+	 * <P>Clear the count from any previous load before a run.
+	 * </P>
+	 */
+	private void resetMetrics() {
+		ProcessorMetrics.reset(this.hazelcastInstance, GesmesDAG.METRICS_VERTICES);
+	}
+
 	/**
 	 * <P>
-	 * View a currency pair's prices.
+	 * View a currency pair's prices, all of them or between two dates.
 	 * </P>
 	 * <P>
 	 * TODO: The j_view object is missing double quotes, so have to manually
 	 * parse. If it was valid JSON the request parameter method argument could be
 	 * changed to {@link CurrencyPair}.
 	 * </P>
-	 * <P><B>Note</B> Here we take a {@link com.hazelcast.core.IMap IMap} and
-	 * downcast it to a {@link java.util.Map}, then take a stream from the
-	 * entryset to convert into the required result.
+	 * <P><B>Note</B> The query is sent to all servers, and each looks up
+	 * the pair's target currency in its index on {@code __key#to}, and the
+	 * dates in its ordered index on {@code __key#date} if a range is given,
+	 * rather than checking every entry. Only the matching entries come back
+	 * to the client, and the time taken depends on the prices asked for,
+	 * not on how many pairs there are.
+	 * </P>
+	 * <P>All of a pair's prices are in one partition, as
+	 * {@link HistoricCurrencyKey} routes on the pair, but the query isn't
+	 * narrowed to that partition with a
+	 * {@link com.hazelcast.query.PartitionPredicate PartitionPredicate}.
+	 * From a client that is sent to the servers as it is, where it can't be
+	 * run, and as it doesn't use the indexes there would be no gain anyway.
 	 * </P>
-	 * <P>As the {@link com.hazelcast.core.IMap IMap} is hosted across multiple
-	 * JVMs this can potentially return more data into the collection than there
-	 * is room to host. It won't happen here as there only so many currency pair
-	 * possibilities, but it's an area to be careful of in general.
+	 * <P>If {@code currency.by-month} is set, the prices are read from the
+	 * map that holds a month per entry. The same query returns a few months
+	 * rather than many days, each already in date order.
 	 * </P>
-	 * <P>See also {@link AverageController#read(String)} which does a similar
-	 * thing but uses a Jet {@link com.hazelcast.jet.stream.IStreamMap IStreamMap}
-	 * to do the streaming more efficiently.
+	 * <P>See also {@link neil.demo.jeeconf2017.util.AverageFormatter#read(String)}
+	 * which reads a whole map, but keeps the result until the map changes.
 	 * </P>
 	 * 
 	 * @param request
 	 *            A String, looks like JSON but isn't
+	 * @param j_since First date wanted, {@code yyyy-mm-dd}, or blank for the earliest
+	 * @param j_until Last date wanted, {@code yyyy-mm-dd}, or blank for the latest
 	 * @return The page to render, and model attributes
 	 */
 	@PostMapping("view")
-	public ModelAndView view(@RequestParam(name="j_view", required=true) String j_view) {
+	public ModelAndView view(@RequestParam(name="j_view", required=true) String j_view,
+			@RequestParam(name="j_since", required=false) String j_since,
+			@RequestParam(name="j_until", required=false) String j_until) {
 
 		ModelAndView modelAndView = new ModelAndView("currency/view");
+		modelAndView.addObject("j_view", j_view);
+		modelAndView.addObject("j_since", j_since);
+		modelAndView.addObject("j_until", j_until);
 
 		try {
 			j_view = j_view.trim();
@@ -165,27 +259,14 @@ public class CurrencyController {
 			String from = j_view.substring(from_index + 5, from_index + 8);
 			String to = j_view.substring(to_index + 3, to_index + 6);
 
-			// Treat Hazelcast's IMap as Java standard map
-			Map<HistoricCurrencyKey, HistoricCurrency> historicCurrencyMap
-				= this.hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY);
-			
-			// See method comments on use of IStreamMap as alternative.
-			Stream<Map.Entry<HistoricCurrencyKey, HistoricCurrency>> historicCurrencies
-				= historicCurrencyMap.entrySet().stream();
-			
-			// Form list of prices for that currency
-			Collection<CurrencyPrice> currencyPrices = 
-					historicCurrencies
-					.filter(entry -> entry.getKey().getFrom().equals(Currency.valueOf(from)))
-					.filter(entry -> entry.getKey().getTo().equals(Currency.valueOf(to)))
-					.map(entry -> 
-							new CurrencyPrice(entry.getKey().getFrom(),
-									entry.getKey().getTo(),
-									entry.getKey().getDate(),
-									Price.CLOSE,
-									entry.getValue().getClose())
-					)
-					.collect(Collectors.toCollection(TreeSet::new));
+			Currency fromCurrency = Currency.valueOf(from);
+			Currency toCurrency = Currency.valueOf(to);
+
+			LocalDate since = (j_since == null || j_since.trim().isEmpty() ? null : LocalDate.parse(j_since.trim()));
+			LocalDate until = (j_until == null || j_until.trim().isEmpty() ? null : LocalDate.parse(j_until.trim()));
+
+			Collection<CurrencyPrice> currencyPrices = (this.byMonth ?
+					this.viewByMonth(fromCurrency, toCurrency, since, until) : this.viewByDay(fromCurrency, toCurrency, since, until));
 
 			modelAndView.addObject("columns", ReflectionUtil.getColumns(CurrencyPrice.class));
 			modelAndView.addObject("data", ReflectionUtil.getData(currencyPrices, CurrencyPrice.class));
@@ -197,4 +278,105 @@ public class CurrencyController {
 
 		return modelAndView;
 	}
+
+	/**
+	 * <P>Query for a currency pair's daily prices.
+	 * </P>
+	 *
+	 * @param fromCurrency Source currency
+	 * @param toCurrency Target currency
+	 * @param since First date, or {@code null}
+	 * @param until Last date, or {@code null}
+	 * @return Its prices, in date order
+	 */
+	private Collection<CurrencyPrice> viewByDay(Currency fromCurrency, Currency toCurrency, LocalDate since, LocalDate until) {
+		IMap<HistoricCurrencyKey, HistoricCurrency> historicCurrencyMap
+			= this.hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY);
+
+		Predicate<HistoricCurrencyKey, HistoricCurrency> predicate =
+				CurrencyController.predicate(fromCurrency, toCurrency, "__key#date", since, until);
+
+		// Form list of prices for that currency
+		return historicCurrencyMap.entrySet(predicate)
+				.stream()
+				.map(entry -> 
+						new CurrencyPrice(entry.getKey().getFrom(),
+								entry.getKey().getTo(),
+								entry.getKey().getDate(),
+								Price.CLOSE,
+								entry.getValue().getClose())
+				)
+				.collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	/**
+	 * <P>Query for a currency pair's months, and list the prices in each
+	 * that are in range.
+	 * </P>
+	 *
+	 * @param fromCurrency Source currency
+	 * @param toCurrency Target currency
+	 * @param since First date, or {@code null}
+	 * @param until Last date, or {@code null}
+	 * @return Its prices, in date order
+	 */
+	private Collection<CurrencyPrice> viewByMonth(Currency fromCurrency, Currency toCurrency, LocalDate since, LocalDate until) {
+		IMap<HistoricCurrencyMonthKey, HistoricCurrencyMonth> historicCurrencyMonthMap
+			= this.hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY_MONTH);
+
+		Predicate<HistoricCurrencyMonthKey, HistoricCurrencyMonth> predicate =
+				CurrencyController.predicate(fromCurrency, toCurrency, "__key#month",
+						(since == null ? null : YearMonth.from(since)), (until == null ? null : YearMonth.from(until)));
+
+		// Whole months match, so the first and last may have dates outside the range
+		int sinceDay = (since == null ? Integer.MIN_VALUE : (int) since.toEpochDay());
+		int untilDay = (until == null ? Integer.MAX_VALUE : (int) until.toEpochDay());
+
+		return historicCurrencyMonthMap.entrySet(predicate)
+				.stream()
+				.flatMap(entry -> 
+						IntStream.range(0, entry.getValue().size())
+						.filter(i -> entry.getValue().getDate(i) >= sinceDay && entry.getValue().getDate(i) <= untilDay)
+						.mapToObj(i -> new CurrencyPrice(fromCurrency,
+								toCurrency,
+								LocalDate.ofEpochDay(entry.getValue().getDate(i)),
+								Price.CLOSE,
+								FixedPoint.toBigDecimal(entry.getValue().getClose(i))))
+				)
+				.collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	/**
+	 * <P>Match on the pair, and the range if given, by the key fields the
+	 * servers index, so each server looks up the matching keys.
+	 * </P>
+	 *
+	 * @param fromCurrency Source currency
+	 * @param toCurrency Target currency
+	 * @param attribute The key's date or month
+	 * @param since Earliest, or {@code null}
+	 * @param until Latest, or {@code null}
+	 * @return A query
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static <K, V> Predicate<K, V> predicate(Currency fromCurrency, Currency toCurrency,
+			String attribute, Comparable since, Comparable until) {
+		Predicate fromPredicate = Predicates.equal("__key#from", fromCurrency);
+		Predicate toPredicate = Predicates.equal("__key#to", toCurrency);
+
+		if (since == null && until == null) {
+			return Predicates.and(fromPredicate, toPredicate);
+		}
+
+		Predicate rangePredicate;
+		if (since == null) {
+			rangePredicate = Predicates.lessEqual(attribute, until);
+		} else if (until == null) {
+			rangePredicate = Predicates.greaterEqual(attribute, since);
+		} else {
+			rangePredicate = Predicates.between(attribute, since, until);
+		}
+
+		return Predicates.and(fromPredicate, toPredicate, rangePredicate);
+	}
 }
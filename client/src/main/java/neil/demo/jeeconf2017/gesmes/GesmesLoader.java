@@ -1,16 +1,12 @@
 package neil.demo.jeeconf2017.gesmes;
 
 import java.io.InputStream;
-import java.math.BigDecimal;
 import java.net.UnknownHostException;
-import java.time.LocalDate;
-
-import javax.xml.transform.stream.StreamSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.Resource;
-import org.springframework.oxm.jaxb.Jaxb2Marshaller;
 import org.springframework.stereotype.Component;
 
 import com.hazelcast.core.HazelcastInstance;
@@ -21,8 +17,10 @@ import neil.demo.jeeconf2017.Constants;
 import neil.demo.jeeconf2017.domain.Currency;
 import neil.demo.jeeconf2017.domain.HistoricCurrency;
 import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
-import neil.demo.jeeconf2017.gesmes.Gesmes.Cube;
-import neil.demo.jeeconf2017.gesmes.Gesmes.Envelope;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthKey;
+import neil.demo.jeeconf2017.util.BatchWriter;
+import neil.demo.jeeconf2017.util.MonthBatchWriter;
 
 /**
  * <P>Read from the European Central Bank, if possible, or from a
@@ -31,6 +29,13 @@ import neil.demo.jeeconf2017.gesmes.Gesmes.Envelope;
  * <P>This is an ETL process. Lots of other ways to do this, for
  * example with a Kafka stream.
  * </P>
+ * <P>The XML doesn't say what the rates are from. That's
+ * {@code gesmes.base}, the Euro unless set otherwise.
+ * </P>
+ * <P>If {@code currency.by-month} is set, prices are written a month per
+ * entry to a different map, with {@link MonthBatchWriter}, rather than
+ * a day per entry.
+ * </P>
  */
 @Component
 @Slf4j
@@ -40,8 +45,10 @@ public class GesmesLoader {
 	private ApplicationContext applicationContext;
 	@Autowired
 	private HazelcastInstance hazelcastInstance;
-	@Autowired
-	private Jaxb2Marshaller jaxb2Marshaller;
+	@Value("${currency.by-month:false}")
+	private boolean byMonth;
+	@Value("${gesmes.base:EUR}")
+	private Currency base;
 
 	/**
 	 * <P>
@@ -50,8 +57,9 @@ public class GesmesLoader {
 	 * use stored results in a file.
 	 * </P>
 	 * <P>
-	 * Use JAXB to turn the XML into a Java object, then for all the rates in
-	 * this inject individually into an {@link IMap}.
+	 * Use {@link GesmesReader} to stream the XML a rate at a time, injecting
+	 * into an {@link IMap} as we go, a batch at a time with {@link BatchWriter}
+	 * rather than one network call per rate.
 	 * </P>
 	 * 
 	 * @return How many were loaded
@@ -69,45 +77,45 @@ public class GesmesLoader {
 				.getResource("classpath:" + Constants.ECB_90DAY_HISTORY_XML_SAVED);
 		Resource[] resources = new Resource[] { mainResource, fallbackResource };
 
-		Envelope envelope = null;
-
-		// Read rates from the available places until successful
-		for (Resource resource : resources) {
-			try (InputStream inputStream = resource.getInputStream();) {
-				log.info("Read from '{}'", resource.getURL().toString());
-				StreamSource streamSource = new StreamSource(inputStream);
-				envelope = (Envelope) this.jaxb2Marshaller.unmarshal(streamSource);
-				break;
-			} catch (UnknownHostException unknownHostException) {
-				// No network access
-				log.error("Problem with '{}'", unknownHostException.getMessage());
-			}
-		}
-
 		IMap<HistoricCurrencyKey, HistoricCurrency> historicCurrencyMap = this.hazelcastInstance
 				.getMap(Constants.MAP_HISTORIC_CURRENCY);
+		IMap<HistoricCurrencyMonthKey, HistoricCurrencyMonth> historicCurrencyMonthMap = this.hazelcastInstance
+				.getMap(Constants.MAP_HISTORIC_CURRENCY_MONTH);
 
 		int count = 0;
 
-		// Allow an NPE to be thrown if data incomplete.
-		Cube parentCube = envelope.getCube();
-		for (Cube dateCube : parentCube.getCubes()) {
-			LocalDate date = LocalDate.parse(dateCube.getTime());
+		// Read rates from the available places until successful
+		for (Resource resource : resources) {
+			try (InputStream inputStream = resource.getInputStream();
+				 GesmesReader gesmesReader = new GesmesReader(inputStream, this.base);
+				 BatchWriter<HistoricCurrencyKey, HistoricCurrency> batchWriter =
+						 new BatchWriter<>(historicCurrencyMap);
+				 MonthBatchWriter monthBatchWriter = new MonthBatchWriter(historicCurrencyMonthMap);) {
+				log.info("Read from '{}'", resource.getURL().toString());
+
+				while (gesmesReader.next()) {
+					HistoricCurrencyKey historicCurrencyKey = new HistoricCurrencyKey();
+					// "From" currency is implied, gesmes.base, the Euro for the European Central Bank.
+					historicCurrencyKey.setFrom(gesmesReader.getBase());
+					historicCurrencyKey.setTo(gesmesReader.getCurrency());
+					historicCurrencyKey.setDate(gesmesReader.getDate());
 
-			for (Cube rateCube : dateCube.getCubes()) {
-				HistoricCurrencyKey historicCurrencyKey = new HistoricCurrencyKey();
-				// "From" currency is implied, for Eureopean Central Bank.
-				historicCurrencyKey.setFrom(Currency.EUR);
-				historicCurrencyKey.setTo(Currency.valueOf(rateCube.getCurrency()));
-				historicCurrencyKey.setDate(date);
+					HistoricCurrency historicCurrency = new HistoricCurrency();
+					historicCurrency.setClose(gesmesReader.getRate());
 
-				HistoricCurrency historicCurrency = new HistoricCurrency();
-				historicCurrency.setClose(new BigDecimal(rateCube.getRate()));
+					if (this.byMonth) {
+						monthBatchWriter.add(historicCurrencyKey, historicCurrency);
+					} else {
+						batchWriter.add(historicCurrencyKey, historicCurrency);
+					}
+				}
 
-				historicCurrencyMap.set(historicCurrencyKey, historicCurrency);
-				count++;
+				count = (this.byMonth ? monthBatchWriter.getCount() : batchWriter.getCount());
+				break;
+			} catch (UnknownHostException unknownHostException) {
+				// No network access
+				log.error("Problem with '{}'", unknownHostException.getMessage());
 			}
-
 		}
 
 		if (count == 0) {
@@ -0,0 +1,216 @@
+package neil.demo.jeeconf2017.job;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.hazelcast.jet.DAG;
+import com.hazelcast.jet.JetInstance;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <P>Submit Jet jobs without waiting for them, so a web request returns
+ * straight away with a job id rather than holding a request thread for
+ * as long as the job runs.
+ * </P>
+ * <P>A background thread waits on each job and records when and how it
+ * ended. The most recent jobs are kept, for a status page to poll.
+ * </P>
+ * <P>Only one job of each name can run at a time. Two runs of the same
+ * graph would be writing to the same maps, and which result ends up
+ * there would be down to timing. This guard is within this client only,
+ * it doesn't stop another client running the same graph.
+ * </P>
+ */
+@Component
+@Slf4j
+public class JobRunner {
+
+	private static final int HISTORY = 20;
+
+	@Autowired
+	private JetInstance jetInstance;
+
+	private final ExecutorService executorService = Executors.newCachedThreadPool();
+	private final Map<Long, JobStatus> jobs = new LinkedHashMap<>();
+	private final Map<Long, Future<Void>> futures = new HashMap<>();
+	private long lastId;
+
+	/**
+	 * <P>Start a job, unless one of the same name is still running.
+	 * </P>
+	 *
+	 * @param name Jobs with the same name don't run at once
+	 * @param description For display
+	 * @param dag The graph to run
+	 * @return The status of the new job, running
+	 * @throws IllegalStateException If a job of that name is running
+	 */
+	public JobStatus submit(String name, String description, DAG dag) {
+		return this.submit(name, description, dag, () -> {});
+	}
+
+	/**
+	 * <P>Start a job, unless one of the same name is still running,
+	 * doing some preparation first.
+	 * </P>
+	 *
+	 * @param name Jobs with the same name don't run at once
+	 * @param description For display
+	 * @param dag The graph to run
+	 * @param prepare Run only if the job is going to be started
+	 * @return The status of the new job, running
+	 * @throws IllegalStateException If a job of that name is running
+	 */
+	public JobStatus submit(String name, String description, DAG dag, Runnable prepare) {
+		JobStatus jobStatus = this.reserve(name, description);
+		long id = jobStatus.getId();
+
+		// Slow, so outside the lock, the reservation keeps out another of this name
+		Future<Void> future;
+		try {
+			prepare.run();
+			future = this.jetInstance.newJob(dag).execute();
+		} catch (RuntimeException runtimeException) {
+			this.end(id, JobStatus.State.FAILED, String.valueOf(runtimeException));
+			throw runtimeException;
+		}
+
+		synchronized (this) {
+			this.futures.put(id, future);
+		}
+		this.executorService.submit(() -> this.await(id, future));
+
+		log.info("submit({}, {}) -> job {}", name, description, id);
+		return jobStatus;
+	}
+
+	/**
+	 * <P>Record a job as running before it is started, so no other of
+	 * the same name can start meanwhile.
+	 * </P>
+	 *
+	 * @throws IllegalStateException If a job of that name is running
+	 */
+	private synchronized JobStatus reserve(String name, String description) {
+		for (JobStatus jobStatus : this.jobs.values()) {
+			if (jobStatus.isRunning() && jobStatus.getName().equals(name)) {
+				throw new IllegalStateException("'" + name + "' already running as job " + jobStatus.getId());
+			}
+		}
+
+		long id = ++this.lastId;
+		JobStatus jobStatus = new JobStatus(id, name, description, JobStatus.State.RUNNING, Instant.now(), null, null);
+		this.jobs.put(id, jobStatus);
+		this.trim();
+		return jobStatus;
+	}
+
+	/**
+	 * @param id From {@link #submit}
+	 * @return The status, or {@code null} if not known or too old to be kept
+	 */
+	public synchronized JobStatus get(long id) {
+		return this.jobs.get(id);
+	}
+
+	/**
+	 * @param name Job name
+	 * @return The most recent job of that name, or {@code null}
+	 */
+	public synchronized JobStatus latest(String name) {
+		List<JobStatus> jobStatuses = new ArrayList<>(this.jobs.values());
+		for (int i = jobStatuses.size() - 1; i >= 0; i--) {
+			if (jobStatuses.get(i).getName().equals(name)) {
+				return jobStatuses.get(i);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * <P>Cancel a running job. Its status changes once it has stopped.
+	 * A job still being prepared or started can't be cancelled yet.
+	 * </P>
+	 *
+	 * @param id From {@link #submit}
+	 */
+	public synchronized void cancel(long id) {
+		Future<Void> future = this.futures.get(id);
+		if (future != null) {
+			future.cancel(true);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.executorService.shutdownNow();
+	}
+
+	/**
+	 * <P>Wait, on a background thread, for a job to end.
+	 * </P>
+	 */
+	private void await(long id, Future<Void> future) {
+		JobStatus.State state;
+		String error = null;
+		try {
+			future.get();
+			state = JobStatus.State.COMPLETED;
+		} catch (CancellationException cancellationException) {
+			state = JobStatus.State.CANCELLED;
+		} catch (ExecutionException executionException) {
+			log.error("Job " + id, executionException.getCause());
+			state = JobStatus.State.FAILED;
+			error = String.valueOf(executionException.getCause());
+		} catch (InterruptedException interruptedException) {
+			// Shutting down
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		this.end(id, state, error);
+	}
+
+	/**
+	 * <P>Record how a job ended, freeing its name for another run.
+	 * </P>
+	 */
+	private synchronized void end(long id, JobStatus.State state, String error) {
+		this.futures.remove(id);
+		JobStatus running = this.jobs.get(id);
+		if (running != null) {
+			this.jobs.put(id, new JobStatus(id, running.getName(), running.getDescription(),
+					state, running.getStart(), Instant.now(), error));
+			log.info("Job {} {} after {}", id, state, this.jobs.get(id).getElapsed());
+		}
+	}
+
+	/**
+	 * <P>Forget the oldest jobs that have ended, beyond the history kept.
+	 * </P>
+	 */
+	private void trim() {
+		List<Long> ids = new ArrayList<>(this.jobs.keySet());
+		for (int i = 0; i < ids.size() && this.jobs.size() > HISTORY; i++) {
+			if (!this.jobs.get(ids.get(i)).isRunning()) {
+				this.jobs.remove(ids.get(i));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,41 @@
+package neil.demo.jeeconf2017.job;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * <P>What is known about a Jet job submitted by {@link JobRunner}.
+ * </P>
+ * <P>A new instance replaces the old when the job ends, so one that
+ * has been handed out doesn't change while a page is showing it.
+ * </P>
+ */
+@AllArgsConstructor
+@Data
+public class JobStatus {
+
+	public enum State { RUNNING, COMPLETED, FAILED, CANCELLED }
+
+	private long		id;
+	private String		name;
+	private String		description;
+	private State		state;
+	private Instant		start;
+	private Instant		end;
+	private String		error;
+
+	/**
+	 * @return Time taken so far, or in total if ended
+	 */
+	public Duration getElapsed() {
+		return Duration.between(this.start, (this.end == null ? Instant.now() : this.end));
+	}
+
+	public boolean isRunning() {
+		return this.state == State.RUNNING;
+	}
+
+}
@@ -0,0 +1,75 @@
+package neil.demo.jeeconf2017.gesmes;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import neil.demo.jeeconf2017.Constants;
+import neil.demo.jeeconf2017.domain.Currency;
+
+/**
+ * <P>
+ * Test the streaming reader finds the same rates as the JAXB
+ * parse in {@link GesmesTest}, a rate at a time.
+ * </P>
+ */
+public class GesmesReaderTest {
+
+	// Don't count the Euro, as that is source currency not any of the targets.
+	private static final int CURRENCIES_EXPECTED = Currency.values().length - 1;
+
+	@Test
+	public void test_read() throws Exception {
+		TreeMap<LocalDate, Integer> ratesPerDate = new TreeMap<>();
+
+		try (InputStream inputStream = GesmesReaderTest.class
+				.getResourceAsStream("/" + Constants.ECB_90DAY_HISTORY_XML_SAVED);
+			 GesmesReader gesmesReader = new GesmesReader(inputStream);) {
+
+			// First in the file
+			assertTrue("First", gesmesReader.next());
+			assertThat("First date", gesmesReader.getDate(), equalTo(LocalDate.of(2017, 5, 24)));
+			assertThat("First currency", gesmesReader.getCurrency(), equalTo(Currency.USD));
+			assertThat("First rate", gesmesReader.getRate(), equalTo(new BigDecimal("1.1193")));
+			ratesPerDate.merge(gesmesReader.getDate(), 1, Integer::sum);
+
+			while (gesmesReader.next()) {
+				assertThat("Target currency", gesmesReader.getCurrency(), not(equalTo(Currency.EUR)));
+				assertTrue("Positive rate", gesmesReader.getRate().compareTo(BigDecimal.ZERO) > 0);
+				ratesPerDate.merge(gesmesReader.getDate(), 1, Integer::sum);
+			}
+		}
+
+		// Hardcoding for specific test data extract for 24th May 2017
+		int TRADING_DAYS_UPTO_2017_05_24 = 61;
+		assertThat("Dates", ratesPerDate.size(), equalTo(TRADING_DAYS_UPTO_2017_05_24));
+		ratesPerDate.forEach((date, count) -> assertThat("Rates on " + date, count, equalTo(CURRENCIES_EXPECTED)));
+	}
+
+	@Test
+	public void test_unknown_currency_skipped() throws Exception {
+		String xml = "<gesmes:Envelope xmlns:gesmes=\"" + Constants.XML_NAMESPACE_GESMES + "\""
+				+ " xmlns=\"" + Constants.XML_NAMESPACE_ECB + "\">"
+				+ "<Cube><Cube time=\"2001-12-31\">"
+				+ "<Cube currency=\"GRD\" rate=\"340.75\"/>"
+				+ "<Cube currency=\"GBP\" rate=\"0.6085\"/>"
+				+ "</Cube></Cube></gesmes:Envelope>";
+
+		try (InputStream inputStream = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+			 GesmesReader gesmesReader = new GesmesReader(inputStream);) {
+
+			assertTrue("GBP", gesmesReader.next());
+			assertThat("Currency", gesmesReader.getCurrency(), equalTo(Currency.GBP));
+			assertThat("Date", gesmesReader.getDate(), equalTo(LocalDate.of(2001, 12, 31)));
+			assertFalse("End", gesmesReader.next());
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package neil.demo.jeeconf2017;
 
+import neil.demo.jeeconf2017.domain.CurrencyPair;
 import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
 
 /**
  * <P>Define some constants.
@@ -10,8 +12,18 @@ public class Constants {
 	
 	// Distributed Objects, all here are names of com.hazelcast.core.IMap objects
 	public static final String      MAP_EXPONENTIAL_MOVING_AVERAGE = "ema";
+	public static final String      MAP_EXPONENTIAL_MOVING_AVERAGE_SERIES = "emaSeries";
 	public static final String      MAP_HISTORIC_CURRENCY	= HistoricCurrency.class.getSimpleName();
+	public static final String      MAP_HISTORIC_CURRENCY_MONTH	= HistoricCurrencyMonth.class.getSimpleName();
+	public static final String      MAP_METRICS = "metrics";
 	public static final String      MAP_SIMPLE_MOVING_AVERAGE = "sma";
+	public static final String      MAP_SIMPLE_MOVING_AVERAGE_SERIES = "smaSeries";
+
+	// Distributed Objects, com.hazelcast.core.IAtomicLong
+	public static final String      ATOMIC_LONG_METRICS_RUN = "metricsRun";
+
+	// Distributed Objects, com.hazelcast.core.ReplicatedMap
+	public static final String      REPLICATED_MAP_CURRENCY_PAIR = CurrencyPair.class.getSimpleName();
 	
 	// Source data, the European Central Bank
 	public static final String      ECB_BASE_URL = "http://www.ecb.europa.eu/stats/eurofxref";
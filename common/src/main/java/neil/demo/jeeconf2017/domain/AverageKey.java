@@ -0,0 +1,66 @@
+package neil.demo.jeeconf2017.domain;
+
+import java.io.Serializable;
+
+import com.hazelcast.core.PartitionAware;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * <P>The key for a moving average result, the currency pair and how many
+ * prices the average is taken over.
+ * </P>
+ * <P>Several window sizes can be calculated in the same run, so the
+ * key must include the window size otherwise the 10 day average and
+ * 200 day average for the same currency would overwrite each other.
+ * </P>
+ * <P>Routing is by the currency pair, the same as {@link HistoricCurrencyKey},
+ * so every average for a pair is stored in the partition holding that pair's
+ * prices. The member that calculates an average from those prices is the
+ * member that stores it, and reading a pair's prices and averages together
+ * only needs that member.
+ * </P>
+ */
+@AllArgsConstructor
+@Data
+@SuppressWarnings("serial")
+public class AverageKey implements Comparable<AverageKey>, PartitionAware<String>, Serializable {
+
+	private Currency	from;
+	private Currency	to;
+	private int			window;
+
+	public AverageKey(final CurrencyPair arg0, final int arg1) {
+		this(arg0.getFrom(), arg0.getTo(), arg1);
+	}
+
+	/**
+	 * @return The shared instance for this key's pair
+	 */
+	public CurrencyPair getCurrencyPair() {
+		return CurrencyPair.of(this.from, this.to);
+	}
+
+	// Partitioning - Use currency pair only, as for the prices
+
+	@Override
+	public String getPartitionKey() {
+		return HistoricCurrencyKey.partitionKey(this.from, this.to);
+	}
+
+	// Comparable - Source currency, target currency, then shortest window first
+	@Override
+	public int compareTo(AverageKey that) {
+
+		int from = this.from.compareTo(that.getFrom());
+		if (from != 0) {
+			return from;
+		}
+
+		int to = this.to.compareTo(that.getTo());
+
+		return to!=0 ? to : Integer.compare(this.window, that.getWindow());
+	}
+
+}
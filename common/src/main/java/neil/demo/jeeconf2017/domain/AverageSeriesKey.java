@@ -0,0 +1,56 @@
+package neil.demo.jeeconf2017.domain;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import com.hazelcast.core.PartitionAware;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * <P>The key for one point in a moving average series, the currency pair,
+ * how many prices the average is taken over, and the date of the newest
+ * of those prices.
+ * </P>
+ * <P>As for {@link AverageKey}, routing is by the currency pair, so the
+ * whole series for a pair is in the partition holding its prices.
+ * </P>
+ */
+@AllArgsConstructor
+@Data
+@SuppressWarnings("serial")
+public class AverageSeriesKey implements Comparable<AverageSeriesKey>, PartitionAware<String>, Serializable {
+
+	private Currency	from;
+	private Currency	to;
+	private int			window;
+	private LocalDate	date;
+
+	// Partitioning - Use currency pair only, as for the prices
+
+	@Override
+	public String getPartitionKey() {
+		return HistoricCurrencyKey.partitionKey(this.from, this.to);
+	}
+
+	// Comparable - Source currency, target currency, shortest window, then oldest date first
+	@Override
+	public int compareTo(AverageSeriesKey that) {
+
+		int from = this.from.compareTo(that.getFrom());
+		if (from != 0) {
+			return from;
+		}
+
+		int to = this.to.compareTo(that.getTo());
+		if (to != 0) {
+			return to;
+		}
+
+		int window = Integer.compare(this.window, that.getWindow());
+
+		return window!=0 ? window : this.date.compareTo(that.getDate());
+	}
+
+}
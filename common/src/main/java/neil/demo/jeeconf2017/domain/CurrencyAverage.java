@@ -7,7 +7,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 
 /**
- * <P>A pair of currencies for trading, from one to the other.
+ * <P>A moving average for a pair of currencies, over a number of prices.
  * </P>
  */
 @AllArgsConstructor
@@ -16,12 +16,15 @@ import lombok.Data;
 public class CurrencyAverage implements Comparable<CurrencyAverage>, Serializable {
 	
 	private CurrencyPair	pair;
+	private int				window;
 	private BigDecimal  	average;
 	
-	// Comparable - only on the currency pair
+	// Comparable - the currency pair, then the window size
 	@Override
 	public int compareTo(CurrencyAverage that) {
-		return this.pair.compareTo(that.getPair());
+		int pair = this.pair.compareTo(that.getPair());
+		
+		return pair!=0 ? pair : Integer.compare(this.window, that.getWindow());
 	}
 
 }
@@ -2,24 +2,85 @@ package neil.demo.jeeconf2017.domain;
 
 import java.io.Serializable;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
 /**
  * <P>A pair of currencies for trading, from one to the other.
  * </P>
- * <P>This class is used by the client currently, but hold in
- * shared as perhaps eventually the server may need it.
+ * <P>There are only so many currencies, so there are only so many pairs,
+ * and every one is created up front. Use {@link #of(Currency, Currency)}
+ * to get the one wanted, it's an array lookup and doesn't allocate, so
+ * is cheap enough to do for every price in a stream. Pairs are immutable
+ * so can be shared.
+ * </P>
+ * <P>Each pair also has an {@link #index(Currency, Currency) index}, from
+ * zero to {@link #count()}, for holding something per pair in an array.
  * </P>
  */
-@AllArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
 @Data
 @SuppressWarnings("serial")
 public class CurrencyPair implements Comparable<CurrencyPair>, Serializable {
 	
-	private Currency	from;
-	private Currency	to;
-	
+	private static final Currency[] CURRENCIES = Currency.values();
+	private static final CurrencyPair[] PAIRS = new CurrencyPair[CURRENCIES.length * CURRENCIES.length];
+	static {
+		for (Currency from : CURRENCIES) {
+			for (Currency to : CURRENCIES) {
+				PAIRS[index(from, to)] = new CurrencyPair(from, to);
+			}
+		}
+	}
+
+	private final Currency	from;
+	private final Currency	to;
+
+	/**
+	 * @param from Source currency
+	 * @param to Target currency
+	 * @return The shared instance for the pair
+	 */
+	public static CurrencyPair of(Currency from, Currency to) {
+		return PAIRS[index(from, to)];
+	}
+
+	/**
+	 * @param index From {@link #index(Currency, Currency)}
+	 * @return The shared instance for the pair
+	 */
+	public static CurrencyPair of(int index) {
+		return PAIRS[index];
+	}
+
+	/**
+	 * <P>Number the pairs, the source currency's ordinal then the
+	 * target currency's.
+	 * </P>
+	 *
+	 * @param from Source currency
+	 * @param to Target currency
+	 * @return From zero up to, but not including, {@link #count()}
+	 */
+	public static int index(Currency from, Currency to) {
+		return from.ordinal() * CURRENCIES.length + to.ordinal();
+	}
+
+	/**
+	 * @return How many pairs there are, including a currency to itself
+	 */
+	public static int count() {
+		return PAIRS.length;
+	}
+
+	/**
+	 * @return This pair's index
+	 */
+	public int index() {
+		return index(this.from, this.to);
+	}
+
 	// Comparable - Source currency, then Target currency
 	@Override
 	public int compareTo(CurrencyPair that) {
@@ -29,4 +90,9 @@ public class CurrencyPair implements Comparable<CurrencyPair>, Serializable {
 		return from!=0 ? from : this.getTo().compareTo(that.getTo());
 	}
 
+	// Serializable - Deserialize to the shared instance
+	private Object readResolve() {
+		return of(this.from, this.to);
+	}
+
 }
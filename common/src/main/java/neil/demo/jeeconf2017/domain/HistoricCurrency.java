@@ -1,7 +1,12 @@
 package neil.demo.jeeconf2017.domain;
 
-import java.io.Serializable;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
 import lombok.Data;
 
@@ -13,14 +18,45 @@ import lombok.Data;
  * </P>
  * <P>The opening price, daily high and daily low would be useful additions.
  * </P>
+ * <P>Serialization writes the price as its unscaled value and scale, rather
+ * than as a Java serialized {@link BigDecimal}.
+ * </P>
  */
 @Data
-@SuppressWarnings("serial")
-public class HistoricCurrency implements Serializable {
+public class HistoricCurrency implements IdentifiedDataSerializable {
 
 	//private BigDecimal	open;
 	private BigDecimal		close;
 	//private BigDecimal	high;
 	//private BigDecimal	low;
 
+	@Override
+	public int getFactoryId() {
+		return MyDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return MyDataSerializableFactory.HISTORIC_CURRENCY;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeBoolean(this.close != null);
+		if (this.close != null) {
+			out.writeLong(this.close.unscaledValue().longValueExact());
+			out.writeInt(this.close.scale());
+		}
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		if (in.readBoolean()) {
+			long unscaled = in.readLong();
+			this.close = new BigDecimal(BigInteger.valueOf(unscaled), in.readInt());
+		} else {
+			this.close = null;
+		}
+	}
+
 }
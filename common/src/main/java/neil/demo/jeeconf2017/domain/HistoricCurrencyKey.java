@@ -1,8 +1,11 @@
 package neil.demo.jeeconf2017.domain;
 
 import com.hazelcast.core.PartitionAware;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
 
-import java.io.Serializable;
+import java.io.IOException;
 import java.time.LocalDate;
 
 import lombok.Data;
@@ -27,20 +30,76 @@ import lombok.Data;
  * </P>
  * </LI>
  * </UL>
+ * <P>Serialization writes each currency as its ordinal in a single byte and the
+ * date as the epoch day, a few bytes in all for what is the most numerous object
+ * in the cluster.
+ * </P>
  */
 @Data
-@SuppressWarnings("serial")
-public class HistoricCurrencyKey implements PartitionAware<String>, Serializable {
-	
+public class HistoricCurrencyKey implements PartitionAware<String>, IdentifiedDataSerializable {
+
+	private static final Currency[] CURRENCIES = Currency.values();
+	private static final String[] PARTITION_KEYS = new String[CurrencyPair.count()];
+	static {
+		for (Currency from : CURRENCIES) {
+			for (Currency to : CURRENCIES) {
+				PARTITION_KEYS[CurrencyPair.index(from, to)] = from.name() + to.name();
+			}
+		}
+	}
+
 	private Currency	from;
 	private Currency	to;
 	private LocalDate   date;
 
-	// Partitioning - Use currency only
+	// Partitioning - Use currency pair, not date
 	
 	@Override
 	public String getPartitionKey() {
-		return this.from.name() + this.to.name();
+		return HistoricCurrencyKey.partitionKey(this.from, this.to);
+	}
+
+	/**
+	 * <P>The routing for all keys for a currency pair, whatever the date,
+	 * so all of a pair's prices are held in the same partition.
+	 * </P>
+	 *
+	 * <P>Built once per pair, as this is called for every price passing
+	 * through a partitioned edge.
+	 * </P>
+	 *
+	 * @param from Source currency
+	 * @param to Target currency
+	 * @return The partition key shared by all dates for the pair
+	 */
+	public static String partitionKey(Currency from, Currency to) {
+		return PARTITION_KEYS[CurrencyPair.index(from, to)];
+	}
+
+	// Serialization - Compact form
+
+	@Override
+	public int getFactoryId() {
+		return MyDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return MyDataSerializableFactory.HISTORIC_CURRENCY_KEY;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeByte(this.from.ordinal());
+		out.writeByte(this.to.ordinal());
+		out.writeInt((int) this.date.toEpochDay());
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		this.from = CURRENCIES[in.readByte()];
+		this.to = CURRENCIES[in.readByte()];
+		this.date = LocalDate.ofEpochDay(in.readInt());
 	}
 
 }
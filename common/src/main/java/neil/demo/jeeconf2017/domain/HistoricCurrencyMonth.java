@@ -0,0 +1,146 @@
+package neil.demo.jeeconf2017.domain;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * <P>The <I>value</I> for a month of prices for a currency pair, the
+ * {@link HistoricCurrencyMonthKey} / {@link HistoricCurrencyMonth}
+ * {@code key-value} pair.
+ * </P>
+ * <P>Dates and closing prices are held in two arrays of primitives, sorted
+ * by date, the date as the epoch day and the price in
+ * {@link neil.demo.jeeconf2017.util.FixedPoint FixedPoint}. A month is one
+ * object and two arrays, rather than a key, a value and a
+ * {@link java.math.BigDecimal} for each day, and reading it gives the
+ * prices in date order without sorting.
+ * </P>
+ * <P>The arrays are exactly the size needed, as a month is written far
+ * less often than it's stored or read. Adding prices creates new arrays.
+ * </P>
+ */
+public class HistoricCurrencyMonth implements IdentifiedDataSerializable {
+
+	private int[]	dates = new int[0];
+	private long[]	closes = new long[0];
+
+	public int size() {
+		return this.dates.length;
+	}
+
+	/**
+	 * @param i From zero for the oldest, to {@code size() - 1} for the newest
+	 * @return The epoch day of that price
+	 */
+	public int getDate(int i) {
+		return this.dates[i];
+	}
+
+	/**
+	 * @param i From zero for the oldest, to {@code size() - 1} for the newest
+	 * @return That closing price, as fixed point
+	 */
+	public long getClose(int i) {
+		return this.closes[i];
+	}
+
+	/**
+	 * <P>Add a price, or replace the price already held for that date.
+	 * </P>
+	 *
+	 * @param date Epoch day
+	 * @param close Fixed point
+	 */
+	public void put(int date, long close) {
+		int i = Arrays.binarySearch(this.dates, date);
+		if (i >= 0) {
+			this.closes[i] = close;
+			return;
+		}
+
+		int insert = -(i + 1);
+		int[] newDates = new int[this.dates.length + 1];
+		long[] newCloses = new long[this.closes.length + 1];
+
+		System.arraycopy(this.dates, 0, newDates, 0, insert);
+		System.arraycopy(this.closes, 0, newCloses, 0, insert);
+		newDates[insert] = date;
+		newCloses[insert] = close;
+		System.arraycopy(this.dates, insert, newDates, insert + 1, this.dates.length - insert);
+		System.arraycopy(this.closes, insert, newCloses, insert + 1, this.closes.length - insert);
+
+		this.dates = newDates;
+		this.closes = newCloses;
+	}
+
+	/**
+	 * <P>Add all the prices from another month, replacing any already held
+	 * for the same dates. Both are in date order, so this is a single pass
+	 * along each.
+	 * </P>
+	 *
+	 * @param that Prices to add, unchanged
+	 */
+	public void merge(HistoricCurrencyMonth that) {
+		int[] newDates = new int[this.dates.length + that.dates.length];
+		long[] newCloses = new long[newDates.length];
+
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while (i < this.dates.length || j < that.dates.length) {
+			if (j == that.dates.length || (i < this.dates.length && this.dates[i] < that.dates[j])) {
+				newDates[k] = this.dates[i];
+				newCloses[k] = this.closes[i];
+				i++;
+			} else {
+				if (i < this.dates.length && this.dates[i] == that.dates[j]) {
+					// Same date, the price added wins
+					i++;
+				}
+				newDates[k] = that.dates[j];
+				newCloses[k] = that.closes[j];
+				j++;
+			}
+			k++;
+		}
+
+		this.dates = (k == newDates.length ? newDates : Arrays.copyOf(newDates, k));
+		this.closes = (k == newCloses.length ? newCloses : Arrays.copyOf(newCloses, k));
+	}
+
+	@Override
+	public String toString() {
+		return "HistoricCurrencyMonth(dates=" + Arrays.toString(this.dates)
+				+ ", closes=" + Arrays.toString(this.closes) + ")";
+	}
+
+	// Serialization - Compact form
+
+	@Override
+	public int getFactoryId() {
+		return MyDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return MyDataSerializableFactory.HISTORIC_CURRENCY_MONTH;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeIntArray(this.dates);
+		out.writeLongArray(this.closes);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		this.dates = in.readIntArray();
+		this.closes = in.readLongArray();
+	}
+
+}
@@ -0,0 +1,95 @@
+package neil.demo.jeeconf2017.domain;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import com.hazelcast.core.PartitionAware;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * <P>The <I>key</I> for a month of prices for a currency pair, the
+ * {@link HistoricCurrencyMonthKey} / {@link HistoricCurrencyMonth}
+ * {@code key-value} pair.
+ * </P>
+ * <P>This is the alternative to a {@link HistoricCurrencyKey} per day.
+ * There are twenty or so trading days in a month, so there are that many
+ * times fewer entries, and the per-entry cost of the map is paid once
+ * per month rather than once per price.
+ * </P>
+ * <P>Routing is by the currency pair, as for {@link HistoricCurrencyKey},
+ * so all months for a pair are in the same partition, the one that would
+ * hold that pair's daily prices.
+ * </P>
+ */
+@AllArgsConstructor
+@Data
+@NoArgsConstructor
+public class HistoricCurrencyMonthKey implements Comparable<HistoricCurrencyMonthKey>, PartitionAware<String>, IdentifiedDataSerializable {
+
+	private static final Currency[] CURRENCIES = Currency.values();
+
+	private Currency	from;
+	private Currency	to;
+	private YearMonth	month;
+
+	public HistoricCurrencyMonthKey(final Currency arg0, final Currency arg1, final LocalDate arg2) {
+		this(arg0, arg1, YearMonth.from(arg2));
+	}
+
+	// Partitioning - Use currency pair, not month
+
+	@Override
+	public String getPartitionKey() {
+		return HistoricCurrencyKey.partitionKey(this.from, this.to);
+	}
+
+	// Comparable - Source currency, target currency, then oldest month first
+	@Override
+	public int compareTo(HistoricCurrencyMonthKey that) {
+
+		int from = this.from.compareTo(that.getFrom());
+		if (from != 0) {
+			return from;
+		}
+
+		int to = this.to.compareTo(that.getTo());
+
+		return to!=0 ? to : this.month.compareTo(that.getMonth());
+	}
+
+	// Serialization - Compact form
+
+	@Override
+	public int getFactoryId() {
+		return MyDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return MyDataSerializableFactory.HISTORIC_CURRENCY_MONTH_KEY;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeByte(this.from.ordinal());
+		out.writeByte(this.to.ordinal());
+		out.writeShort(this.month.getYear());
+		out.writeByte(this.month.getMonthValue());
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		this.from = CURRENCIES[in.readByte()];
+		this.to = CURRENCIES[in.readByte()];
+		int year = in.readShort();
+		this.month = YearMonth.of(year, in.readByte());
+	}
+
+}
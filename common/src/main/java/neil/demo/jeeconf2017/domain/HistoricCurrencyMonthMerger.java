@@ -0,0 +1,92 @@
+package neil.demo.jeeconf2017.domain;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.hazelcast.map.EntryBackupProcessor;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * <P>Add prices to a month of prices, in the member that holds it.
+ * </P>
+ * <P>A month is written a day at a time, and by several loads that may
+ * overlap. Reading the month to the client, adding to it and writing it
+ * back would send the whole month twice and could lose a concurrent
+ * update. Instead only the prices being added are sent, and merged in
+ * place, with the partition locked for the duration.
+ * </P>
+ * <P>The same merge is applied to the backup, this object being its own
+ * backup processor so that it's sent in the same compact form.
+ * </P>
+ */
+@SuppressWarnings("serial")
+public class HistoricCurrencyMonthMerger implements EntryProcessor<HistoricCurrencyMonthKey, HistoricCurrencyMonth>,
+	EntryBackupProcessor<HistoricCurrencyMonthKey, HistoricCurrencyMonth>, IdentifiedDataSerializable {
+
+	private HistoricCurrencyMonth additions;
+
+	public HistoricCurrencyMonthMerger() {
+	}
+
+	public HistoricCurrencyMonthMerger(final HistoricCurrencyMonth arg0) {
+		this.additions = arg0;
+	}
+
+	/**
+	 * <P>Create the month if it's new, otherwise merge into it.
+	 * </P>
+	 *
+	 * @param entry The month, value may be {@code null}
+	 * @return {@code null}, nothing to send back
+	 */
+	@Override
+	public Object process(Map.Entry<HistoricCurrencyMonthKey, HistoricCurrencyMonth> entry) {
+		HistoricCurrencyMonth historicCurrencyMonth = entry.getValue();
+
+		if (historicCurrencyMonth == null) {
+			entry.setValue(this.additions);
+		} else {
+			historicCurrencyMonth.merge(this.additions);
+			entry.setValue(historicCurrencyMonth);
+		}
+
+		return null;
+	}
+
+	@Override
+	public EntryBackupProcessor<HistoricCurrencyMonthKey, HistoricCurrencyMonth> getBackupProcessor() {
+		return this;
+	}
+
+	@Override
+	public void processBackup(Map.Entry<HistoricCurrencyMonthKey, HistoricCurrencyMonth> entry) {
+		this.process(entry);
+	}
+
+	// Serialization - Compact form
+
+	@Override
+	public int getFactoryId() {
+		return MyDataSerializableFactory.FACTORY_ID;
+	}
+
+	@Override
+	public int getId() {
+		return MyDataSerializableFactory.HISTORIC_CURRENCY_MONTH_MERGER;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		this.additions.writeData(out);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		this.additions = new HistoricCurrencyMonth();
+		this.additions.readData(in);
+	}
+
+}
@@ -0,0 +1,46 @@
+package neil.demo.jeeconf2017.domain;
+
+import com.hazelcast.nio.serialization.DataSerializableFactory;
+import com.hazelcast.nio.serialization.IdentifiedDataSerializable;
+
+/**
+ * <P>Create empty domain objects for Hazelcast to deserialize into.
+ * </P>
+ * <P>Domain objects that implement {@link IdentifiedDataSerializable}
+ * are sent as the factory id and class id, then their fields written
+ * in the most compact way. This avoids Java serialization, which
+ * writes the class description and all field names for every object.
+ * </P>
+ * <P>The factory must be registered by the same factory id
+ * in both {@code hazelcast.xml} and {@code hazelcast-client.xml}.
+ * </P>
+ */
+public class MyDataSerializableFactory implements DataSerializableFactory {
+
+	public static final int FACTORY_ID = 1;
+
+	public static final int HISTORIC_CURRENCY_KEY = 1;
+	public static final int HISTORIC_CURRENCY = 2;
+	public static final int HISTORIC_CURRENCY_MONTH_KEY = 3;
+	public static final int HISTORIC_CURRENCY_MONTH = 4;
+	public static final int HISTORIC_CURRENCY_MONTH_MERGER = 5;
+
+	@Override
+	public IdentifiedDataSerializable create(int typeId) {
+		switch (typeId) {
+		case HISTORIC_CURRENCY_KEY:
+			return new HistoricCurrencyKey();
+		case HISTORIC_CURRENCY:
+			return new HistoricCurrency();
+		case HISTORIC_CURRENCY_MONTH_KEY:
+			return new HistoricCurrencyMonthKey();
+		case HISTORIC_CURRENCY_MONTH:
+			return new HistoricCurrencyMonth();
+		case HISTORIC_CURRENCY_MONTH_MERGER:
+			return new HistoricCurrencyMonthMerger();
+		default:
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package neil.demo.jeeconf2017.domain;
+
+import java.io.Serializable;
+import java.util.TreeMap;
+
+import lombok.Data;
+
+/**
+ * <P>Counts and timings for one vertex of a Jet job, totalled across all
+ * the processors for that vertex on all members.
+ * </P>
+ * <P>Times are in nanoseconds, summed across processors, so they show
+ * where the work is done rather than how long the job took.
+ * </P>
+ * <P>The {@code run} is set when a vertex's totals are reset before a
+ * job is started, and each processor sends its counts tagged with the
+ * run it started in. Counts for an earlier run are dropped.
+ * </P>
+ */
+@Data
+@SuppressWarnings("serial")
+public class VertexMetrics implements Comparable<VertexMetrics>, Serializable {
+
+	private String						vertex;
+	private long						run;
+	private int							processors;
+	private long						itemsIn;
+	private long						itemsOut;
+	private long						processNanos;
+	private long						completeNanos;
+	private TreeMap<String, Integer>	windowSizes = new TreeMap<>();
+
+	/**
+	 * <P>Add in another set of counts for the same vertex. Window sizes are
+	 * current values not counts, so replace those already held.
+	 * </P>
+	 *
+	 * @param that Counts since the last time they were added
+	 */
+	public void add(VertexMetrics that) {
+		this.processors += that.getProcessors();
+		this.itemsIn += that.getItemsIn();
+		this.itemsOut += that.getItemsOut();
+		this.processNanos += that.getProcessNanos();
+		this.completeNanos += that.getCompleteNanos();
+		this.windowSizes.putAll(that.getWindowSizes());
+	}
+
+	// Comparable - Vertex name
+	@Override
+	public int compareTo(VertexMetrics that) {
+		return this.vertex.compareTo(that.getVertex());
+	}
+
+}
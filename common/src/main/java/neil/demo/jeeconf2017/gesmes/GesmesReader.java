@@ -0,0 +1,155 @@
+package neil.demo.jeeconf2017.gesmes;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import lombok.extern.slf4j.Slf4j;
+import neil.demo.jeeconf2017.Constants;
+import neil.demo.jeeconf2017.domain.Currency;
+
+/**
+ * <P>Read the XML from the European Central Bank one rate at a time,
+ * rather than unmarshalling the whole document into objects first.
+ * </P>
+ * <P>Only the current date, currency and rate are held, so memory use is the
+ * same for the 90 day file as for the full history back to 1999, and the
+ * caller can be writing rates while the rest of the document is still being
+ * read.
+ * </P>
+ * <P>Usage is pull style, call {@link #next()} until it returns {@code false},
+ * reading the getters after each. The document structure is as for
+ * {@code Gesmes}, a {@code Cube} with a {@code time} attribute holding
+ * several {@code Cube} with {@code currency} and {@code rate} attributes.
+ * </P>
+ * <P>Currencies not in {@link Currency}, such as those replaced by the Euro
+ * that appear in the full history, are skipped.
+ * </P>
+ * <P>The document doesn't say what the rates are from, the European Central
+ * Bank's are all from the Euro. For a feed in the same format from
+ * elsewhere, give the source currency when constructing.
+ * </P>
+ */
+@Slf4j
+public class GesmesReader implements AutoCloseable {
+
+	private static final String CUBE = "Cube";
+	private static final String CURRENCY = "currency";
+	private static final String RATE = "rate";
+	private static final String TIME = "time";
+
+	private final XMLStreamReader xmlStreamReader;
+	private final Currency base;
+	private final Set<String> skipped = new HashSet<>();
+	private LocalDate date;
+	private Currency currency;
+	private BigDecimal rate;
+
+	/**
+	 * @param arg0 XML of rates from the Euro, which the caller should close
+	 * @throws XMLStreamException If not XML
+	 */
+	public GesmesReader(final InputStream arg0) throws XMLStreamException {
+		this(arg0, Currency.EUR);
+	}
+
+	/**
+	 * @param arg0 XML, which the caller should close
+	 * @param arg1 The source currency of every rate in it
+	 * @throws XMLStreamException If not XML
+	 */
+	public GesmesReader(final InputStream arg0, final Currency arg1) throws XMLStreamException {
+		this.base = arg1;
+		XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		this.xmlStreamReader = xmlInputFactory.createXMLStreamReader(arg0);
+	}
+
+	/**
+	 * <P>Move to the next rate.
+	 * </P>
+	 *
+	 * @return {@code false} at the end of the document
+	 * @throws XMLStreamException If the XML is malformed, or a rate has no date
+	 */
+	public boolean next() throws XMLStreamException {
+		while (this.xmlStreamReader.hasNext()) {
+			if (this.xmlStreamReader.next() != XMLStreamConstants.START_ELEMENT
+					|| !CUBE.equals(this.xmlStreamReader.getLocalName())
+					|| !Constants.XML_NAMESPACE_ECB.equals(this.xmlStreamReader.getNamespaceURI())) {
+				continue;
+			}
+
+			String time = this.xmlStreamReader.getAttributeValue(null, TIME);
+			if (time != null) {
+				this.date = LocalDate.parse(time);
+				continue;
+			}
+
+			String currencyStr = this.xmlStreamReader.getAttributeValue(null, CURRENCY);
+			String rateStr = this.xmlStreamReader.getAttributeValue(null, RATE);
+			if (currencyStr == null || rateStr == null) {
+				// Outermost cube
+				continue;
+			}
+			if (this.date == null) {
+				throw new XMLStreamException("Rate for '" + currencyStr + "' without a date",
+						this.xmlStreamReader.getLocation());
+			}
+
+			try {
+				this.currency = Currency.valueOf(currencyStr);
+			} catch (IllegalArgumentException illegalArgumentException) {
+				if (this.skipped.add(currencyStr)) {
+					log.warn("Skipping unknown currency '{}'", currencyStr);
+				}
+				continue;
+			}
+			this.rate = new BigDecimal(rateStr);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return The date of the current rate
+	 */
+	public LocalDate getDate() {
+		return this.date;
+	}
+
+	/**
+	 * @return The source currency of every rate, given on construction
+	 */
+	public Currency getBase() {
+		return this.base;
+	}
+
+	/**
+	 * @return The target currency of the current rate, the source is {@link #getBase()}
+	 */
+	public Currency getCurrency() {
+		return this.currency;
+	}
+
+	/**
+	 * @return The current rate
+	 */
+	public BigDecimal getRate() {
+		return this.rate;
+	}
+
+	@Override
+	public void close() throws XMLStreamException {
+		this.xmlStreamReader.close();
+	}
+
+}
@@ -0,0 +1,37 @@
+package neil.demo.jeeconf2017.jet;
+
+import com.hazelcast.jet.Distributed;
+
+import neil.demo.jeeconf2017.domain.AverageKey;
+
+import java.util.Map;
+
+/**
+ * <P>Routing for the edges after {@link LastNProcessor}, which carry
+ * windows and averages keyed by {@link AverageKey}.
+ * </P>
+ * <P>Route by the currency pair, the same as {@link MaKeyExtractor}
+ * does for the prices going in, so all windows and averages for a pair
+ * go to the same processor. When continuous, a pair's averages are then
+ * calculated and written in the order its prices arrived, and a newer
+ * average can't be overtaken by an older one in another processor.
+ * </P>
+ */
+@SuppressWarnings("serial")
+public class AverageKeyExtractor implements Distributed.Function<Map.Entry<AverageKey, ?>, String> {
+
+	/**
+	 * <P>Use the key's provided routing.
+	 * </P>
+	 * 
+	 * @param entry A window or an average
+	 * @return The routing key of the currency pair, {@code source + target} currencies.
+	 */
+	@Override
+	public String apply(Map.Entry<AverageKey, ?> entry) {
+		AverageKey averageKey = entry.getKey();
+
+		return averageKey.getPartitionKey();
+	}
+
+}
@@ -1,15 +1,15 @@
 package neil.demo.jeeconf2017.jet;
 
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeSet;
 
 import com.hazelcast.jet.AbstractProcessor;
+import com.hazelcast.jet.Traverser;
 import com.hazelcast.jet.Traversers;
-import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.AverageKey;
+import neil.demo.jeeconf2017.util.FixedPoint;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -26,81 +26,99 @@ import lombok.extern.slf4j.Slf4j;
  * to compute the next. This value is then used with a multiple
  * times the seventh, and so on.
  * </P>
+ * <P>The {@link PriceWindow} works this out from the newest
+ * price back, stopping once older prices are too insignificant
+ * to change the result, so there are at most a few dozen steps
+ * whether the window has 10 or 200 prices.
+ * </P>
+ * <P>The average is rounded to 2 decimal places, and output as a
+ * {@link java.math.BigDecimal} or as fixed point.
+ * </P>
  */
 @Slf4j
 public class EmaProcessor extends AbstractProcessor {
 
-	private Map<Currency, BigDecimal> averages = new HashMap<>();
+	private final boolean continuous;
+	private final boolean fixedPoint;
+	private Map<AverageKey, Object> averages = new HashMap<>();
+	private Traverser<Map.Entry<AverageKey, Object>> outputTraverser;
+	private final ProcessorMetrics processorMetrics = new ProcessorMetrics(EmaProcessor.class.getSimpleName());
+
+	public EmaProcessor() {
+		this(false, false);
+	}
+
+	public EmaProcessor(final boolean arg0, final boolean arg1) {
+		this.continuous = arg0;
+		this.fixedPoint = arg1;
+	}
+
+	@Override
+	protected void init(Context context) {
+		this.processorMetrics.init(context.jetInstance());
+	}
 
 	/**
-	 * <P>Called once per currency. Calculate the average and
+	 * <P>Called once per currency and window size. Calculate the average and
 	 * store it temporarily until input is exhausted.
 	 * </P>
-	 * <P>The method here is to take the flat average of the first
-	 * five terms.
-	 * </P>
-	 * <P>The weight for the 6<sup>th</sup> is (2/6), and the value
-	 * here is ( (4/6 * the 6<sup>th</sup>) + (2/6 * the value for the first 5) ).
-	 * </P>
-	 * <P>The weight for the 7<sup>th</sup> is (2/7), and the value
-	 * here is ( (5/7 * the 7<sup>th</sup>) + (2/7 * the value for the first 6) ).
-	 * </P>
-	 * <P>The weight for the 8<sup>th</sup> is (2/8), and the value
-	 * here is ( (6/8 * the 7<sup>th</sup>) + (2/8 * the value for the first 7) ).
+	 * <P>If continuous, input is never exhausted. This is called
+	 * each time a currency's prices change and the result is
+	 * sent on immediately.
 	 * </P>
 	 * 
 	 * @param ordinal Where this item has come from
-	 * @param item The item itself, a currency pair on a date
-	 * @return {@code false} if input set too small, otherwise {@code true}
+	 * @param item The item itself, a currency and its window of prices
+	 * @return {@code true}, an empty input set is logged and skipped
 	 */
     @Override
     protected boolean tryProcess(int ordinal, Object item) throws IOException {
+    	long start = this.processorMetrics.start();
     	
 		@SuppressWarnings("unchecked")
-		Map.Entry<Currency, TreeSet<ClosingPrice>> entry = 
-				(Map.Entry<Currency, TreeSet<ClosingPrice>>) item;
+		Map.Entry<AverageKey, PriceWindow> entry = 
+				(Map.Entry<AverageKey, PriceWindow>) item;
 		
-		Currency currency = entry.getKey();
-		TreeSet<ClosingPrice> prices = entry.getValue();
+		AverageKey averageKey = entry.getKey();
+		PriceWindow prices = entry.getValue();
 
-		if (prices.size() < 6) {
-			// Abandon calculation
-			log.warn("Only {} prices for {}", prices.size(), currency);
-			return false;
+		if (prices.size() == 0) {
+			// Abandon calculation, but the item is consumed
+			log.warn("Empty set of prices for {}", averageKey);
+			this.processorMetrics.in(start);
+			return true;
 		}
 
-		ClosingPrice[] priceArray = prices.toArray(new ClosingPrice[prices.size()]);
-
-		// Simple average for first five
+		long average = EmaProcessor.average(prices);
 		
-		BigDecimal FIVE = new BigDecimal(5);
-		BigDecimal tally = BigDecimal.ZERO;
-		int i=0;
-		for (; i<5; i++) {
-			tally = tally.add(priceArray[i].getClose());
-		}
+		// Save result for later output, or output now if continuous
 		
-		BigDecimal value = tally.divide(FIVE);
-		BigDecimal TWO = new BigDecimal(2);
-
-		// Exponentiate for remaining
+		Object output = (this.fixedPoint ? Long.valueOf(average) : FixedPoint.toBigDecimal(average, 2));
 		
-		for ( ; i<priceArray.length ; i++) {
-			BigDecimal divisor = new BigDecimal(i + 1);
-			BigDecimal weight = TWO.divide(divisor, 2, RoundingMode.HALF_UP);
-			
-			BigDecimal previous = value.multiply(weight);
-			BigDecimal current = priceArray[i].getClose().multiply(BigDecimal.ONE.subtract(weight));
-			value = current.add(previous);
+		if (this.continuous) {
+			super.emit(new AbstractMap.SimpleImmutableEntry<>(averageKey, output));
+			this.processorMetrics.out(1);
+		} else {
+			this.averages.put(averageKey, output);
 		}
 
-		// Save result for later output
-		
-		this.averages.put(currency, value.setScale(2, RoundingMode.HALF_UP));
+		this.processorMetrics.in(start);
 		
 		return true;
     }
 
+    /**
+     * <P>The exponential average of a window, rounded to 2 decimal places.
+     * </P>
+     *
+     * @param prices Not empty
+     * @return Fixed point
+     */
+    public static long average(PriceWindow prices) {
+		// Unrounded from the window, round once
+		return FixedPoint.round(prices.getExponentialAverage(), 2);
+    }
+
     /**
      * <P>Output the averages accumulated.
      * </P>
@@ -109,8 +127,21 @@ public class EmaProcessor extends AbstractProcessor {
      */
     @Override
     public boolean complete() {
-    	log.info("complete -> {}", this.averages.keySet());
-    	return super.emitCooperatively(Traversers.traverseStream(this.averages.entrySet().stream()));
+    	long start = this.processorMetrics.start();
+
+    	// Same traverser each call, in case the outbox fills
+    	if (this.outputTraverser == null) {
+    		this.outputTraverser = Traversers.traverseStream(this.averages.entrySet().stream());
+    	}
+    	boolean done = super.emitCooperatively(this.outputTraverser);
+
+    	this.processorMetrics.complete(start);
+    	if (done) {
+    		log.info("complete -> {}", this.averages.keySet());
+    		this.processorMetrics.out(this.averages.size());
+    		this.processorMetrics.publish();
+    	}
+    	return done;
     }
 
 }
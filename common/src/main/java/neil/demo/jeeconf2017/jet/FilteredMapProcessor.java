@@ -0,0 +1,65 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.AbstractProcessor;
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.Traversers;
+
+import neil.demo.jeeconf2017.util.BatchWriter;
+
+/**
+ * <P>A source of the map entries chosen by {@link FilteredMapProcessorSupplier},
+ * fetched from the {@link IMap} a batch at a time so only one batch of
+ * values is held at once.
+ * </P>
+ * <P>Fetching blocks on the {@link IMap}, so this isn't cooperative.
+ * </P>
+ */
+public class FilteredMapProcessor extends AbstractProcessor {
+
+	private final IMap<Object, Object> iMap;
+	private final Iterator<Object> keys;
+	private Traverser<Map.Entry<Object, Object>> batch;
+
+	public FilteredMapProcessor(final IMap<Object, Object> arg0, final List<Object> arg1) {
+		this.iMap = arg0;
+		this.keys = arg1.iterator();
+	}
+
+	@Override
+	public boolean isCooperative() {
+		return false;
+	}
+
+    /**
+     * <P>Emit the current batch, then fetch the next, until all keys
+     * are done.
+     * </P>
+     *
+     * @return {@code true} once every entry is emitted
+     */
+    @Override
+    public boolean complete() {
+    	while (true) {
+    		if (this.batch != null && !super.emitCooperatively(this.batch)) {
+    			return false;
+    		}
+    		if (!this.keys.hasNext()) {
+    			return true;
+    		}
+
+    		Set<Object> batchKeys = new HashSet<>();
+    		while (this.keys.hasNext() && batchKeys.size() < BatchWriter.DEFAULT_BATCH_SIZE) {
+    			batchKeys.add(this.keys.next());
+    		}
+    		this.batch = Traversers.traverseStream(this.iMap.getAll(batchKeys).entrySet().stream());
+    	}
+    }
+
+}
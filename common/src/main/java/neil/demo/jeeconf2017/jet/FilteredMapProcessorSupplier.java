@@ -0,0 +1,88 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.PartitionAware;
+import com.hazelcast.jet.ProcessorSupplier;
+import com.hazelcast.query.Predicate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <P>Create {@link FilteredMapProcessor} instances to read only the
+ * entries of an {@link IMap} that match a {@link Predicate}, rather
+ * than all of them as {@link com.hazelcast.jet.Processors#readMap
+ * Processors.readMap()} does.
+ * </P>
+ * <P>One instance of this supplier runs in each server JVM. It runs the
+ * query against the entries that JVM owns, with
+ * {@link IMap#localKeySet(Predicate)}, so the split of the data is the
+ * same as {@code readMap} gives. The query only looks at keys, so the
+ * values of entries that don't match are never deserialized, and are
+ * never passed downstream. If the map has an index on the attributes
+ * queried, entries that don't match aren't even looked at.
+ * </P>
+ * <P>The matching keys are shared out between the processors by their
+ * routing key, then each processor fetches its values a batch at a time.
+ * </P>
+ */
+@SuppressWarnings("serial")
+@Slf4j
+public class FilteredMapProcessorSupplier implements ProcessorSupplier {
+
+	private final String mapName;
+	private final Predicate<?, ?> predicate;
+
+	private transient IMap<Object, Object> iMap;
+
+	public FilteredMapProcessorSupplier(final String arg0, final Predicate<?, ?> arg1) {
+		this.mapName = arg0;
+		this.predicate = arg1;
+	}
+
+	/**
+	 * <P>Find the map in the server JVM this supplier has been sent to.
+	 * </P>
+	 *
+	 * @param context Gives access to the Jet instance
+	 */
+	@Override
+	public void init(Context context) {
+		this.iMap = context.jetInstance().getHazelcastInstance().getMap(this.mapName);
+	}
+
+	/**
+	 * <P>Find the local keys that match, and share them out.
+	 * </P>
+	 *
+	 * @param requiredNumber How many to create
+	 * @return A collection of the required size
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Collection<FilteredMapProcessor> get(int requiredNumber) {
+		List<List<Object>> keys = new ArrayList<>();
+		for (int i=0; i<requiredNumber; i++) {
+			keys.add(new ArrayList<>());
+		}
+
+		Set<Object> localKeys = this.iMap.localKeySet((Predicate<Object, Object>) this.predicate);
+		for (Object key : localKeys) {
+			Object routing = (key instanceof PartitionAware ? ((PartitionAware<?>) key).getPartitionKey() : key);
+			keys.get(Math.abs(routing.hashCode() % requiredNumber)).add(key);
+		}
+		log.info("get({}) -> {} of {} local entries match {}", requiredNumber, localKeys.size(),
+				this.iMap.getLocalMapStats().getOwnedEntryCount(), this.predicate);
+
+		List<FilteredMapProcessor> processors = new ArrayList<>();
+		for (List<Object> processorKeys : keys) {
+			processors.add(new FilteredMapProcessor(this.iMap, processorKeys));
+		}
+		return processors;
+	}
+
+}
@@ -0,0 +1,88 @@
+package neil.demo.jeeconf2017.jet;
+
+import com.hazelcast.jet.DAG;
+import com.hazelcast.jet.Edge;
+import com.hazelcast.jet.Processors;
+import com.hazelcast.jet.Vertex;
+
+import neil.demo.jeeconf2017.Constants;
+import neil.demo.jeeconf2017.domain.Currency;
+
+/**
+ * <P>A <B>D</B>istributed <B>A</B>cyclic <B>G</B>raph to load currency prices
+ * from the European Central Bank's XML into the historic currency {@link IMap}.
+ * </P>
+ * <P>This is the alternative to {@link neil.demo.jeeconf2017.gesmes.GesmesLoader GesmesLoader}
+ * in the client. Rather than one thread in the client parsing and sending every
+ * price across the network, each server member reads the document and writes
+ * its share of the prices, so loading speeds up as members are added.
+ * </P>
+ * <PRE>
+ *                     +-------------------+
+ *                     | Gesmes Processor  |
+ *                     +-------------------+
+ *                               |
+ *                     (from, to, date, price)
+ *                               |
+ *                   /========================\
+ *                   | Historic Currency IMap |
+ *                   \========================/
+ * </PRE>
+ * <P>The edge is distributed, and partitioned with {@link MaKeyExtractor}
+ * the same way the {@link IMap} is. Each price is sent to the member that
+ * owns its partition, and written there, so the writes are all local and
+ * don't wait on the network. Otherwise every member would write to every
+ * other member.
+ * </P>
+ * <P>When storing by month, the sink is a {@link MonthWriterProcessor}
+ * instead, merging each price into its month in the historic currency
+ * month {@link IMap}. A month's key routes on the currency pair too, so
+ * its merges are local in the same way.
+ * </P>
+ * <P>The source has a local parallelism of one, as each processor parses the
+ * whole document and only the writing is split. More than one per member
+ * would parse the document again without writing any faster.
+ * </P>
+ */
+public class GesmesDAG extends DAG {
+
+	/**
+	 * <P>The names this job's processors publish {@link ProcessorMetrics} under.
+	 * </P>
+	 */
+	public static final String[] METRICS_VERTICES = {
+			GesmesProcessor.class.getSimpleName(),
+	};
+
+	/**
+	 * @param location A URL, or {@code classpath:} and a resource name, readable from every member
+	 */
+	public GesmesDAG (final String location) {
+		this(location, Currency.EUR);
+	}
+
+	/**
+	 * @param location A URL, or {@code classpath:} and a resource name, readable from every member
+	 * @param base The source currency of every rate in the document
+	 */
+	public GesmesDAG (final String location, final Currency base) {
+		this(location, base, false);
+	}
+
+	/**
+	 * @param location A URL, or {@code classpath:} and a resource name, readable from every member
+	 * @param base The source currency of every rate in the document
+	 * @param byMonth Write into the map of prices by month rather than by day
+	 */
+	public GesmesDAG (final String location, final Currency base, final boolean byMonth) {
+		super();
+
+		Vertex gesmesSource = this.newVertex("gesmesSource", new GesmesProcessorMetaSupplier(location, base))
+				.localParallelism(1);
+		Vertex mapSink = (byMonth ?
+				this.newVertex("mapSink", MonthWriterProcessor::new) :
+				this.newVertex("mapSink", Processors.writeMap(Constants.MAP_HISTORIC_CURRENCY)));
+		this.edge(Edge.between(gesmesSource, mapSink).distributed().partitioned(new MaKeyExtractor()));
+	}
+
+}
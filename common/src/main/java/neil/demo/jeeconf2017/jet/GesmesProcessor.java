@@ -0,0 +1,177 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.AbstractMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.hazelcast.jet.AbstractProcessor;
+import com.hazelcast.jet.Traverser;
+
+import lombok.extern.slf4j.Slf4j;
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.gesmes.GesmesReader;
+
+/**
+ * <P>A source of map entries read from the European Central Bank's XML,
+ * using {@link GesmesReader}.
+ * </P>
+ * <P>Each processor reads the whole document, but only emits the rates
+ * for its share of the dates, those where the epoch day modulo the number
+ * of processors is this processor's number. All processors across the
+ * cluster together emit every rate once, and each emits about the same
+ * amount whatever the date range in the document.
+ * </P>
+ * <P>Reading a file or URL blocks, so this processor is not cooperative
+ * and gets a thread of its own.
+ * </P>
+ * <P>The rates emitted are counted as {@link ProcessorMetrics}, published
+ * every few seconds while reading and at the end, so the client can show
+ * how many have been loaded so far.
+ * </P>
+ */
+@Slf4j
+public class GesmesProcessor extends AbstractProcessor {
+
+	private static final String CLASSPATH = "classpath:";
+
+	private final String location;
+	private final Currency base;
+	private final int part;
+	private final int parts;
+	private InputStream inputStream;
+	private GesmesReader gesmesReader;
+	private Traverser<Map.Entry<HistoricCurrencyKey, HistoricCurrency>> traverser;
+	private int count;
+	private final ProcessorMetrics processorMetrics = new ProcessorMetrics(GesmesProcessor.class.getSimpleName());
+
+	/**
+	 * @param arg0 A URL, or {@code classpath:} and a resource name
+	 * @param arg1 The source currency of every rate in the document
+	 * @param arg2 This processor's number, from zero
+	 * @param arg3 How many processors are sharing the document
+	 */
+	public GesmesProcessor(final String arg0, final Currency arg1, final int arg2, final int arg3) {
+		this.location = arg0;
+		this.base = arg1;
+		this.part = arg2;
+		this.parts = arg3;
+	}
+
+	@Override
+	public boolean isCooperative() {
+		return false;
+	}
+
+	@Override
+	protected void init(Context context) {
+		this.processorMetrics.init(context.jetInstance());
+	}
+
+	/**
+	 * <P>Open the document on the first call, then emit as much as the
+	 * outbox will take on each call until the document is exhausted.
+	 * </P>
+	 * <P>The document is closed once all is read, or if reading fails.
+	 * </P>
+	 *
+	 * @return {@code true} once all rates for this processor are emitted
+	 */
+	@Override
+	public boolean complete() {
+		boolean ended = true;
+		try {
+			if (this.traverser == null) {
+				try {
+					this.inputStream = open(this.location);
+					this.gesmesReader = new GesmesReader(this.inputStream, this.base);
+				} catch (IOException | XMLStreamException exception) {
+					throw new IllegalStateException("Cannot read '" + this.location + "'", exception);
+				}
+				this.traverser = this::read;
+			}
+
+			ended = super.emitCooperatively(this.traverser);
+		} finally {
+			if (ended) {
+				this.close();
+			}
+		}
+
+		if (!ended) {
+			return false;
+		}
+
+		log.info("complete -> {} rates, part {} of {}", this.count, this.part, this.parts);
+		this.processorMetrics.publish();
+		return true;
+	}
+
+	/**
+	 * <P>Close the reader and the stream, whichever are open.
+	 * </P>
+	 */
+	private void close() {
+		try {
+			if (this.gesmesReader != null) {
+				this.gesmesReader.close();
+			}
+		} catch (XMLStreamException exception) {
+			log.warn("Closing '{}'", this.location, exception);
+		}
+		try {
+			if (this.inputStream != null) {
+				this.inputStream.close();
+			}
+		} catch (IOException exception) {
+			log.warn("Closing '{}'", this.location, exception);
+		}
+	}
+
+	/**
+	 * @return The next rate for this processor, or {@code null} at the end
+	 */
+	private Map.Entry<HistoricCurrencyKey, HistoricCurrency> read() {
+		try {
+			while (this.gesmesReader.next()) {
+				if (Math.floorMod(this.gesmesReader.getDate().toEpochDay(), this.parts) != this.part) {
+					continue;
+				}
+
+				HistoricCurrencyKey historicCurrencyKey = new HistoricCurrencyKey();
+				// "From" currency is implied, given with the document, the Euro for the European Central Bank.
+				historicCurrencyKey.setFrom(this.gesmesReader.getBase());
+				historicCurrencyKey.setTo(this.gesmesReader.getCurrency());
+				historicCurrencyKey.setDate(this.gesmesReader.getDate());
+
+				HistoricCurrency historicCurrency = new HistoricCurrency();
+				historicCurrency.setClose(this.gesmesReader.getRate());
+
+				this.count++;
+				this.processorMetrics.out(1);
+				return new AbstractMap.SimpleImmutableEntry<>(historicCurrencyKey, historicCurrency);
+			}
+			return null;
+		} catch (XMLStreamException exception) {
+			throw new IllegalStateException("Cannot parse '" + this.location + "'", exception);
+		}
+	}
+
+	private static InputStream open(String location) throws IOException {
+		if (location.startsWith(CLASSPATH)) {
+			String name = location.substring(CLASSPATH.length());
+			InputStream inputStream = GesmesProcessor.class.getClassLoader().getResourceAsStream(name);
+			if (inputStream == null) {
+				throw new IOException("Not on classpath: '" + name + "'");
+			}
+			return inputStream;
+		}
+		return new URL(location).openStream();
+	}
+
+}
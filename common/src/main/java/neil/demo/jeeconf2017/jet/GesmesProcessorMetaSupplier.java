@@ -0,0 +1,51 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.util.List;
+import java.util.function.Function;
+
+import com.hazelcast.jet.ProcessorMetaSupplier;
+import com.hazelcast.jet.ProcessorSupplier;
+import com.hazelcast.nio.Address;
+
+import neil.demo.jeeconf2017.domain.Currency;
+
+/**
+ * <P>Create a {@link GesmesProcessorSupplier} for each member, each told
+ * its position in the list of members Jet gives for this job.
+ * </P>
+ * <P>This runs once, when the job starts, and the list is the one the job
+ * is deployed to. A member's position in it is the same number however
+ * the cluster has changed, unlike asking each member to find itself in the
+ * cluster's member list, which could differ between members if one joins
+ * or leaves as the job starts, so a share of the dates could be loaded
+ * twice or not at all.
+ * </P>
+ */
+@SuppressWarnings("serial")
+public class GesmesProcessorMetaSupplier implements ProcessorMetaSupplier {
+
+	private final String location;
+	private final Currency base;
+
+	/**
+	 * @param arg0 A URL, or {@code classpath:} and a resource name
+	 * @param arg1 The source currency of every rate in the document
+	 */
+	public GesmesProcessorMetaSupplier(final String arg0, final Currency arg1) {
+		this.location = arg0;
+		this.base = arg1;
+	}
+
+	/**
+	 * @param addresses Members running the job, in the same order for all
+	 * @return A supplier for each member, numbered by position in the list
+	 */
+	@Override
+	public Function<Address, ProcessorSupplier> get(List<Address> addresses) {
+		String location = this.location;
+		Currency base = this.base;
+		int memberCount = addresses.size();
+		return address -> new GesmesProcessorSupplier(location, base, addresses.indexOf(address), memberCount);
+	}
+
+}
@@ -0,0 +1,64 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.hazelcast.jet.ProcessorSupplier;
+
+import lombok.extern.slf4j.Slf4j;
+import neil.demo.jeeconf2017.domain.Currency;
+
+/**
+ * <P>Create {@link GesmesProcessor} instances, numbered across the whole
+ * cluster so that each member loads a different share of the dates.
+ * </P>
+ * <P>One instance of this supplier runs in each server JVM, given its
+ * member's number by {@link GesmesProcessorMetaSupplier}. Processors on
+ * the first member are numbered from zero, those on the second member
+ * follow on, and so on.
+ * </P>
+ * <P>The document must be readable from every member, a URL they can all
+ * reach or a resource on their classpath.
+ * </P>
+ */
+@SuppressWarnings("serial")
+@Slf4j
+public class GesmesProcessorSupplier implements ProcessorSupplier {
+
+	private final String location;
+	private final Currency base;
+	private final int memberIndex;
+	private final int memberCount;
+
+	/**
+	 * @param arg0 A URL, or {@code classpath:} and a resource name
+	 * @param arg1 The source currency of every rate in the document
+	 * @param arg2 This member's number, from zero
+	 * @param arg3 How many members are running the job
+	 */
+	public GesmesProcessorSupplier(final String arg0, final Currency arg1, final int arg2, final int arg3) {
+		this.location = arg0;
+		this.base = arg1;
+		this.memberIndex = arg2;
+		this.memberCount = arg3;
+	}
+
+	/**
+	 * @param requiredNumber How many to create on this member
+	 * @return A collection of the required size
+	 */
+	@Override
+	public Collection<GesmesProcessor> get(int requiredNumber) {
+		int parts = this.memberCount * requiredNumber;
+
+		List<GesmesProcessor> processors = new ArrayList<>();
+		for (int i=0; i<requiredNumber; i++) {
+			processors.add(new GesmesProcessor(this.location, this.base, this.memberIndex * requiredNumber + i, parts));
+		}
+
+		log.info("get({}) -> member {} of {}, reading '{}'", requiredNumber, this.memberIndex, this.memberCount, this.location);
+		return processors;
+	}
+
+}
@@ -1,15 +1,21 @@
 package neil.demo.jeeconf2017.jet;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.TreeSet;
+import java.util.stream.Stream;
 
 import com.hazelcast.jet.AbstractProcessor;
+import com.hazelcast.jet.Traverser;
 import com.hazelcast.jet.Traversers;
+import neil.demo.jeeconf2017.domain.AverageKey;
 import neil.demo.jeeconf2017.domain.Currency;
 import neil.demo.jeeconf2017.domain.HistoricCurrency;
 import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthKey;
+import neil.demo.jeeconf2017.util.FixedPoint;
 
 /**
  * <P>The first stage in moving average calculation, get the series
@@ -20,71 +26,183 @@ import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
  * input is partitioned, currencies will not be spread across
  * processors.
  * </P>
+ * <P>Several values of '<I>n</I>' can be requested, in which case
+ * each price read is added to a window of each size. The input is
+ * only read once however many sizes are asked for.
+ * </P>
+ * <P>Only full windows are sent on, as for {@link MaSeriesProcessor}.
+ * A currency with fewer than '<I>n</I>' prices has no '<I>n</I>' day
+ * average, whether the job is continuous or not.
+ * </P>
+ * <P>In a continuous job, input never ends, so instead of waiting to
+ * the end the current '<I>last n</I>' for a currency is sent on whenever
+ * a price arrives that changes it, once there are '<I>n</I>'. What is
+ * sent is a {@link PriceWindow#snapshot()}, the sum and the newest prices
+ * the averages need, so each price costs the same to pass on whatever the
+ * window sizes.
+ * </P>
+ * <P>Input can also be a month of prices for a currency pair, a
+ * {@link HistoricCurrencyMonth}, each of which is added in turn. The
+ * source can only select whole months, so prices before the first date
+ * wanted are skipped here.
+ * </P>
+ * <P>Counts, timings and how full each window is are published as
+ * {@link ProcessorMetrics}.
+ * </P>
  */
 public class LastNProcessor<Entry, Set> extends AbstractProcessor {
 
-	private final int last;
+	private final boolean continuous;
+	private final int since;
 
 	/**
-	 * <P>For each currency, keep an ordered list of daily prices.
+	 * <P>For each window size, for each currency pair, keep an ordered window
+	 * of daily prices.
 	 * </P>
-	 * TODO The source currency in the data feed is always the Euro
-	 * so only the target currency is stored. This could/should be
-	 * expanded should data from other exchanges be obtained.
 	 */
-	private final Map<Currency, TreeSet<ClosingPrice>> collatedPrices = new HashMap<>();
+	private final PriceWindowStore[] collatedPrices;
+	private Traverser<Map.Entry<AverageKey, PriceWindow>> outputTraverser;
+	private final ProcessorMetrics processorMetrics = new ProcessorMetrics(LastNProcessor.class.getSimpleName());
 	
-	public LastNProcessor(final int arg0) {
-		this.last = arg0;
+	public LastNProcessor(final int[] arg0, final boolean arg1) {
+		this(arg0, arg1, Integer.MIN_VALUE);
+	}
+
+	public LastNProcessor(final int[] arg0, final boolean arg1, final int arg2) {
+		this.collatedPrices = new PriceWindowStore[arg0.length];
+		for (int i=0; i<arg0.length; i++) {
+			this.collatedPrices[i] = new PriceWindowStore(arg0[i]);
+		}
+		this.continuous = arg1;
+		this.since = arg2;
+	}
+
+	@Override
+	protected void init(Context context) {
+		this.processorMetrics.init(context.jetInstance());
 	}
 	
 	/**
-	 * <P>Use a {@link java.util.TreeSet} to keep the last '<I>n</I>' items,
+	 * <P>Use a {@link PriceWindow} to keep the last '<I>n</I>' items,
 	 * as later processing may need them in order -- exponential moving
 	 * average does, as the more recent values are given a higher weighting.
 	 * </P>
 	 * 
 	 * @param ordinal Where this item has come from
-	 * @param item The item itself, a currency pair on a date
+	 * @param item The item itself, a currency pair on a date, or in a month
 	 * @return {@code true} for successfully processed.
 	 */
     @Override
     protected boolean tryProcess(int ordinal, Object item) throws IOException {
+    	long start = this.processorMetrics.start();
     	
-		@SuppressWarnings("unchecked")
-		Map.Entry<HistoricCurrencyKey, HistoricCurrency> entry = 
-				(Map.Entry<HistoricCurrencyKey, HistoricCurrency>) item;
-		
-		HistoricCurrencyKey historicCurrencyKey = entry.getKey();
-		HistoricCurrency historicCurrency = entry.getValue();
-	
-		// Ensure we have a list of values for the currency received
-		if (!this.collatedPrices.containsKey(historicCurrencyKey.getTo())) {
-			this.collatedPrices.put(historicCurrencyKey.getTo(), new TreeSet<>());
-		}
-		
-		TreeSet<ClosingPrice> lastNPrices = this.collatedPrices.get(historicCurrencyKey.getTo());
+		Map.Entry<?, ?> entry = (Map.Entry<?, ?>) item;
 
-		// Add price to set, a TreeSet<Comparable> so goes in the corrected order
-		lastNPrices.add(new ClosingPrice(historicCurrencyKey.getDate(), historicCurrency.getClose()));
-		
-		// Ascending order, first is oldest so not needed if have too many
-		if (lastNPrices.size() > this.last) {
-			lastNPrices.remove(lastNPrices.first());
+		if (entry.getValue() instanceof HistoricCurrencyMonth) {
+			HistoricCurrencyMonthKey historicCurrencyMonthKey = (HistoricCurrencyMonthKey) entry.getKey();
+			HistoricCurrencyMonth historicCurrencyMonth = (HistoricCurrencyMonth) entry.getValue();
+
+			for (int i = 0; i < historicCurrencyMonth.size(); i++) {
+				if (historicCurrencyMonth.getDate(i) >= this.since) {
+					this.add(historicCurrencyMonthKey.getFrom(), historicCurrencyMonthKey.getTo(),
+							historicCurrencyMonth.getDate(i), historicCurrencyMonth.getClose(i));
+				}
+			}
+		} else {
+			HistoricCurrencyKey historicCurrencyKey = (HistoricCurrencyKey) entry.getKey();
+			HistoricCurrency historicCurrency = (HistoricCurrency) entry.getValue();
+
+			this.add(historicCurrencyKey.getFrom(), historicCurrencyKey.getTo(),
+					(int) historicCurrencyKey.getDate().toEpochDay(), FixedPoint.toLong(historicCurrency.getClose()));
 		}
+
+		this.processorMetrics.in(start);
 		
     	return true;
     }
 
     /**
-     * <P>Send out the collated '<I>last n</I>' for each currency.
+     * <P>Add one price to the window of each size for its currency pair.
+     * </P>
+     *
+     * @param from Source currency
+     * @param to Target currency
+     * @param date Epoch day
+     * @param close Fixed point
+     */
+    private void add(Currency from, Currency to, int date, long close) {
+		for (PriceWindowStore priceWindowStore : this.collatedPrices) {
+			PriceWindow lastNPrices = priceWindowStore.get(from, to);
+
+			// Goes in date order, replacing any previous price for the same date
+			int size = lastNPrices.size();
+			boolean kept = lastNPrices.add(date, close);
+
+			// Continuous, note how full as the window fills, it then stays full
+			if (this.continuous && lastNPrices.size() != size) {
+				this.processorMetrics.windowSize(
+						HistoricCurrencyKey.partitionKey(from, to) + "/" + priceWindowStore.capacity(), lastNPrices.size());
+			}
+
+			// Continuous, pass on a snapshot if this price is in the last 'n', and there are 'n'
+			if (this.continuous && kept && lastNPrices.size() == priceWindowStore.capacity()) {
+				AverageKey averageKey = new AverageKey(from, to, priceWindowStore.capacity());
+				super.emit(new AbstractMap.SimpleImmutableEntry<>(averageKey, lastNPrices.snapshot()));
+				this.processorMetrics.out(1);
+			}
+		}
+    }
+
+    /**
+     * <P>Send out the collated '<I>last n</I>' for each currency and
+     * each window size, if there are '<I>n</I>' prices.
      * </P>
      * 
      * @return Should be {@code true}, streaming the collected results shouldn't fail
      */
     @Override
     public boolean complete() {
-    	return super.emitCooperatively(Traversers.traverseStream(this.collatedPrices.entrySet().stream()));
+    	long start = this.processorMetrics.start();
+
+    	// Same traverser each call, in case the outbox fills
+    	if (this.outputTraverser == null) {
+    		this.outputTraverser = Traversers.traverseStream(this.fullWindows());
+    	}
+    	boolean done = super.emitCooperatively(this.outputTraverser);
+
+    	this.processorMetrics.complete(start);
+    	if (done) {
+    		this.processorMetrics.out((int) this.fullWindows().count());
+    		this.publishMetrics();
+    	}
+    	return done;
+    }
+
+    /**
+     * @return Each currency and window size with a full window
+     */
+    private Stream<Map.Entry<AverageKey, PriceWindow>> fullWindows() {
+    	return Arrays.stream(this.collatedPrices)
+    			.flatMap(priceWindowStore ->
+    				priceWindowStore.stream()
+    				.filter(entry -> entry.getValue().size() == priceWindowStore.capacity())
+    				.map(entry -> new AbstractMap.SimpleImmutableEntry<>(
+    						new AverageKey(entry.getKey(), priceWindowStore.capacity()), entry.getValue()))
+    			);
+    }
+
+    /**
+     * <P>Add how full each window is, then publish.
+     * </P>
+     */
+    private void publishMetrics() {
+    	for (PriceWindowStore priceWindowStore : this.collatedPrices) {
+    		priceWindowStore.stream().forEach(entry ->
+    			this.processorMetrics.windowSize(
+    					HistoricCurrencyKey.partitionKey(entry.getKey().getFrom(), entry.getKey().getTo())
+    					+ "/" + priceWindowStore.capacity(), entry.getValue().size()));
+    	}
+    	this.processorMetrics.publish();
     }
     
 }
@@ -15,10 +15,18 @@ import com.hazelcast.jet.ProcessorSupplier;
 @SuppressWarnings("serial")
 public class LastNProcessorSupplier implements ProcessorSupplier {
 
-	private final int last;
+	private final boolean continuous;
+	private final int[] last;
+	private final int since;
 	
-	public LastNProcessorSupplier(final int arg0) {
+	public LastNProcessorSupplier(final int[] arg0, final boolean arg1) {
+		this(arg0, arg1, Integer.MIN_VALUE);
+	}
+
+	public LastNProcessorSupplier(final int[] arg0, final boolean arg1, final int arg2) {
 		this.last = arg0;
+		this.continuous = arg1;
+		this.since = arg2;
 	}
 
 	/**
@@ -35,7 +43,7 @@ public class LastNProcessorSupplier implements ProcessorSupplier {
 	public Collection get(int requiredNumber) {
 		List<LastNProcessor> result = new ArrayList<>();
 		for (int i=0; i<requiredNumber; i++) {
-			result.add(new LastNProcessor(this.last));
+			result.add(new LastNProcessor(this.last, this.continuous, this.since));
 		}
 		return result;
 	}
@@ -0,0 +1,56 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+import lombok.Data;
+
+import neil.demo.jeeconf2017.domain.CurrencyPair;
+
+/**
+ * <P>The options for a run of {@link MaDAG}, so the graph's constructor
+ * doesn't need a growing list of arguments.
+ * </P>
+ * <UL>
+ * <LI><P>{@code windows} - The window sizes to calculate averages over,
+ * by default just 10.
+ * </P></LI>
+ * <LI><P>{@code continuous} - Run forever, updating averages as prices
+ * change, rather than once over the current prices.
+ * </P></LI>
+ * <LI><P>{@code fixedPoint} - Store averages as {@code long} in
+ * {@link neil.demo.jeeconf2017.util.FixedPoint FixedPoint} form
+ * rather than {@link java.math.BigDecimal}.
+ * </P></LI>
+ * <LI><P>{@code fused} - Calculate both averages in one
+ * {@link MaStatsProcessor} vertex, rather than separate simple and
+ * exponential vertices that are each sent every window.
+ * </P></LI>
+ * <LI><P>{@code series} - Calculate the averages as at every date, with
+ * {@link MaSeriesProcessor}, into the series maps. Not continuous.
+ * </P></LI>
+ * <LI><P>{@code since} - Only read prices on or after this date,
+ * {@code null} for all. For the latest averages, a little more than the
+ * largest window is enough, so the job doesn't read the whole history.
+ * </P></LI>
+ * <LI><P>{@code pairs} - Only read prices for these currency pairs,
+ * {@code null} or empty for all.
+ * </P></LI>
+ * <LI><P>{@code byMonth} - Read prices from the map holding a month per
+ * entry, rather than a day per entry. Not continuous.
+ * </P></LI>
+ * </UL>
+ */
+@Data
+public class MaConfig {
+
+	private int[]		windows = { 10 };
+	private boolean		continuous;
+	private boolean		fixedPoint;
+	private boolean		fused;
+	private boolean		series;
+	private LocalDate	since;
+	private Set<CurrencyPair>	pairs;
+	private boolean		byMonth;
+
+}
@@ -1,18 +1,32 @@
 package neil.demo.jeeconf2017.jet;
 
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
 import com.hazelcast.jet.DAG;
 import com.hazelcast.jet.Edge;
 import com.hazelcast.jet.Processors;
 import com.hazelcast.jet.Vertex;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
 
 import neil.demo.jeeconf2017.Constants;
+import neil.demo.jeeconf2017.domain.CurrencyPair;
 
 /**
  * <P>A <B>D</B>istributed <B>A</B>cyclic <B>G</B>raph to compute <B>M</B>oving <B>A</B>verages.
  * </P>
- * <P>The moving averages are calculated on currency prices, for the last 10 prices,
- * and are calculated according to both <I>simple</I> and an <I>exponential</I> (weighted)
- * calculation scheme.
+ * <P>The moving averages are calculated on currency prices, for the last 10 prices
+ * or whatever other window sizes are requested, and are calculated according to both
+ * <I>simple</I> and an <I>exponential</I> (weighted) calculation scheme.
+ * </P>
+ * <P>Several window sizes, such as 20, 50, 100 and 200 days, can be requested at once.
+ * The {@link IMap} is read once and each price fed into a window of each size. The
+ * results are keyed by currency and window size.
  * </P>
  * <P>In pictorial terms, the processing looks like:
  * </P>
@@ -27,7 +41,7 @@ import neil.demo.jeeconf2017.Constants;
  *                               | Last 'n' Processor | 
  *                               +--------------------+          
  *                                         |
- *                                    (to, price[])                                        
+ *                               (from, to, n, price[])
  *                                         |
  *                   +---------------------+---------------------+
  *                   |                                           |
@@ -35,16 +49,16 @@ import neil.demo.jeeconf2017.Constants;
  *          | SMA Calculator |                           | EMA Calculator |
  *          +----------------+                           +----------------+
  *                   |                                           |
- *              (to, price)                                 (to, price)
+ *          (from, to, n, price)                        (from, to, n, price)
  *                   |                                           |
  *           /================\                          /================\
  *           | SMA Price IMap |                          | EMA Price IMap |
  *           \================/                          \================/
  * </PRE>
- * <P><B>NOTE:</B>
- * In the current data feed, the source currency is always the Euro ("{@code EUR}"), so
- * only the target currency passes through the stages. This optimisation needs to be
- * removed if the data feed expands to have other source currencies.
+ * <P>Each stage is by currency pair, so a feed with prices from several source
+ * currencies, not just the Euro, keeps each pair separate. Pairs are looked up
+ * by {@link neil.demo.jeeconf2017.domain.CurrencyPair#index CurrencyPair.index}
+ * from the two currencies, so nothing is created per price to do so.
  * </P>
  * <P>There are a few stages to this graph. Remember there will be at least one instance
  * of this graph running on every node.
@@ -63,7 +77,7 @@ import neil.demo.jeeconf2017.Constants;
  * </P>
  * <H3>2-A <B>{@link LastNProcessor} -> {@link SmaProcessor}</B></H3>
  * <P>For each target currency, the {@link LastNProcessor} emits
- * a set of last <I>n</I> prices for that currency.
+ * a set of last <I>n</I> prices for that currency, for each <I>n</I>.
  * </P>
  * <P>This is fed into the {@link SmaProcessor} which then only
  * has to sum each up and divide by the count to calculate the
@@ -92,38 +106,257 @@ import neil.demo.jeeconf2017.Constants;
  * from the calculation in parallel into a {@link IMap} using the
  * build-in map writer processor {@link Processors#writeMap}. 
  * </P>
+ * <H3>Edges</H3>
+ * <P>Every edge in this graph is local, no data crosses between members
+ * once read from the source {@link IMap}. This relies on the source being
+ * partitioned by currency pair, so all of a pair's prices are read on the
+ * same member, and all its windows and averages are calculated there.
+ * The edges after the source are partitioned by currency pair too, with
+ * {@link MaKeyExtractor} and {@link AverageKeyExtractor}, so on that member
+ * one processor at each stage handles the pair. Results are keyed by
+ * {@link neil.demo.jeeconf2017.domain.AverageKey AverageKey}, also partitioned
+ * by currency pair, so they are stored on the member that calculated them.
+ * </P>
+ * <H3>Continuous</H3>
+ * <P>As described above, the graph runs once over the whole {@link IMap}
+ * and ends. Each run re-reads all history, so the time taken grows with
+ * the amount of history even if only one price has changed.
+ * </P>
+ * <P>The alternative is to run <I>continuously</I>. The source becomes a
+ * {@link MapEventProcessorSupplier}, which starts with the current content
+ * and then passes on only the entries that are added or updated. Each
+ * stage passes on its result as soon as it is changed by an input, so
+ * one new price results in one new simple average and one new exponential
+ * average for that currency only. This job never ends, it has to be cancelled.
+ * </P>
+ * <H3>Fixed point</H3>
+ * <P>Optionally, the averages can be written to the {@link IMap} as a {@code long}
+ * in {@link neil.demo.jeeconf2017.util.FixedPoint FixedPoint} form instead of
+ * as a {@link java.math.BigDecimal}. Prices are already held this way during the
+ * calculation, so no {@link java.math.BigDecimal} is created in the graph at all.
+ * Rounding is the same either way, so the values shown are the same.
+ * </P>
+ * <H3>Filtering</H3>
+ * <P>The source reads the whole {@link IMap} unless told otherwise. A job
+ * for the latest 10 day average only needs the last few weeks, so can be
+ * given a date to read from, and a set of currency pairs. These become a
+ * query on the key run on each member by {@link FilteredMapProcessorSupplier},
+ * or by {@link MapEventProcessorSupplier} if continuous, so prices that aren't
+ * needed are skipped without being deserialized or sent down the graph,
+ * and the time taken depends on the window size rather than how much
+ * history there is. The servers index the key's date and target currency,
+ * so the query looks up the matching keys rather than checking every key.
+ * </P>
+ * <H3>By month</H3>
+ * <P>Optionally, prices can be read from the map that holds a month of prices
+ * for a pair in each entry, a {@link neil.demo.jeeconf2017.domain.HistoricCurrencyMonth
+ * HistoricCurrencyMonth}, rather than a day. The source reads twenty or so times
+ * fewer entries, each already in date order, and {@link LastNProcessor} or
+ * {@link MaSeriesProcessor} add each price in the month in turn. Filtering by date
+ * selects whole months, so those processors are also given the date to skip
+ * prices before. A change to one price would resend its whole month, so this
+ * isn't offered with continuous.
+ * </P>
+ * <H3>Series</H3>
+ * <P>Optionally, instead of the averages as at the latest date, calculate
+ * them as at every date, for charting. A single {@link MaSeriesProcessor}
+ * collects each pair's whole history, then slides a window along it in
+ * date order, writing a simple and an exponential average for each date
+ * to their own series {@link IMap}, keyed by
+ * {@link neil.demo.jeeconf2017.domain.AverageSeriesKey AverageSeriesKey}.
+ * </P>
+ * <H3>Fused</H3>
+ * <P>Steps <B>2-A</B> and <B>2-B</B> each receive every window the
+ * {@link LastNProcessor} emits, so each window is sent twice, and if the
+ * edges were distributed it would be serialized twice. Optionally, a single
+ * {@link MaStatsProcessor} takes each window once and calculates both
+ * averages, emitting simple averages on ordinal 0 to the SMA map and
+ * exponential averages on ordinal 1 to the EMA map.
+ * </P>
+ * <PRE>
+ *                               +--------------------+          
+ *                               | Last 'n' Processor | 
+ *                               +--------------------+          
+ *                                         |
+ *                               (from, to, n, price[])
+ *                                         |
+ *                             +------------------------+
+ *                             | SMA and EMA Calculator |
+ *                             +------------------------+
+ *                                 |               |
+ *                (from, to, n, price)  (from, to, n, price)
+ *                                 |               |
+ *                  /================\           /================\
+ *                  | SMA Price IMap |           | EMA Price IMap |
+ *                  \================/           \================/
+ * </PRE>
  */
 public class MaDAG extends DAG {
+
+	/**
+	 * <P>The names this job's processors publish {@link ProcessorMetrics} under,
+	 * whichever options are used.
+	 * </P>
+	 */
+	public static final String[] METRICS_VERTICES = {
+			LastNProcessor.class.getSimpleName(),
+			SmaProcessor.class.getSimpleName(),
+			EmaProcessor.class.getSimpleName(),
+			MaStatsProcessor.class.getSimpleName(),
+			MaSeriesProcessor.class.getSimpleName(),
+	};
 	
-	private static final int MAX = 10;
+	public MaDAG (final int... last) {
+		this(withWindows(last));
+	}
 
 	// https://en.wikipedia.org/wiki/Fragile_base_class
-	public MaDAG (final int last) {
+	public MaDAG (final MaConfig maConfig) {
 		super();
 		
-		if (last > MAX) {
-			throw new RuntimeException("Processing capped at last " + MAX + ", supplied " + last);
+		final int[] last = maConfig.getWindows();
+		final boolean continuous = maConfig.isContinuous();
+		final boolean fixedPoint = maConfig.isFixedPoint();
+		final boolean fused = maConfig.isFused();
+		final boolean series = maConfig.isSeries();
+		final boolean byMonth = maConfig.isByMonth();
+		final int since = (maConfig.getSince() == null ? Integer.MIN_VALUE : (int) maConfig.getSince().toEpochDay());
+
+		if (last.length == 0) {
+			throw new IllegalArgumentException("No window sizes supplied");
+		}
+		if (Arrays.stream(last).anyMatch(n -> n < 1)) {
+			throw new IllegalArgumentException("Window sizes must be positive, supplied " + Arrays.toString(last));
+		}
+		if (Arrays.stream(last).distinct().count() != last.length) {
+			throw new IllegalArgumentException("Window sizes must be different, supplied " + Arrays.toString(last));
+		}
+		if (series && continuous) {
+			throw new IllegalArgumentException("Series can't be continuous, it needs all history before starting");
+		}
+		if (byMonth && continuous) {
+			throw new IllegalArgumentException("Prices by month can't be continuous, each change would resend the month");
+		}
+
+		final String mapName = (byMonth ? Constants.MAP_HISTORIC_CURRENCY_MONTH : Constants.MAP_HISTORIC_CURRENCY);
+		final Predicate<?, ?> filter = MaDAG.filter(maConfig.getSince(), maConfig.getPairs(), byMonth);
+
+		if (series) {
+			/* Whole history per pair, then a point per date. The edge is local and
+			 * partitioned by pair, as for the "lastN" vertex below.
+			 */
+			Vertex mapSource = this.mapSource(false, mapName, filter);
+			Vertex maSeries = this.newVertex("maSeries", () -> new MaSeriesProcessor(last, fixedPoint, since));
+			this.edge(Edge.between(mapSource, maSeries).partitioned(new MaKeyExtractor()));
+
+			Vertex smaSeriesMapSink = this.newVertex("smaSeriesMapSink",
+					Processors.writeMap(Constants.MAP_SIMPLE_MOVING_AVERAGE_SERIES));
+			Vertex emaSeriesMapSink = this.newVertex("emaSeriesMapSink",
+					Processors.writeMap(Constants.MAP_EXPONENTIAL_MOVING_AVERAGE_SERIES));
+			this.edge(Edge.from(maSeries, MaSeriesProcessor.SMA_ORDINAL).to(smaSeriesMapSink));
+			this.edge(Edge.from(maSeries, MaSeriesProcessor.EMA_ORDINAL).to(emaSeriesMapSink));
+			return;
 		}
 
 		/* First stage, send the map content through a processor that will collate
 		 * the last "N" prices for each currency.
+		 *
+		 * Edges are local unless made distributed, and this one is deliberately local.
+		 * The source map is partitioned by currency pair, and each member's source only
+		 * reads the partitions that member owns, so a pair's whole history is already on
+		 * one member. Partitioning by pair then picks which local processor gets it.
 		 */
-		Vertex mapSource = this.newVertex("mapSource", Processors.readMap(Constants.MAP_HISTORIC_CURRENCY));
-		Vertex lastN = this.newVertex("lastN", new LastNProcessorSupplier(last));
+		Vertex mapSource = this.mapSource(continuous, mapName, filter);
+		Vertex lastN = this.newVertex("lastN", new LastNProcessorSupplier(last, continuous, since));
 		this.edge(Edge.between(mapSource, lastN).partitioned(new MaKeyExtractor()));
 
-		/* Simple Moving Average fork, sum and write to the SMA map
+		/* Windows never leave the member that built them. The edges into the average
+		 * vertices are local, and partitioned by pair so that a pair's windows are
+		 * always handled by the same processor and stay in sequence.
+		 *
+		 * The sink edges are local too, each member writes the averages it calculated.
+		 * AverageKey is routed by currency pair, so the write is to this member as well.
 		 */
-		Vertex sma = this.newVertex("sma", SmaProcessor::new);
-		this.edge(Edge.from(lastN, 0).to(sma));
 		Vertex smaMapSink = this.newVertex("smaMapSink", Processors.writeMap(Constants.MAP_SIMPLE_MOVING_AVERAGE));
-		this.edge(Edge.between(sma, smaMapSink));
-
-		/* Exponential Moving Average fork, sum and write to the EMA map
-		 */
-		Vertex ema = this.newVertex("ema", EmaProcessor::new);
-		this.edge(Edge.from(lastN, 1).to(ema));
 		Vertex emaMapSink = this.newVertex("emaMapSink", Processors.writeMap(Constants.MAP_EXPONENTIAL_MOVING_AVERAGE));
-		this.edge(Edge.between(ema, emaMapSink));
+
+		if (fused) {
+			/* Both averages from one vertex, each window sent to it once
+			 */
+			Vertex maStats = this.newVertex("maStats", () -> new MaStatsProcessor(continuous, fixedPoint));
+			this.edge(Edge.between(lastN, maStats).partitioned(new AverageKeyExtractor()));
+			this.edge(Edge.from(maStats, MaStatsProcessor.SMA_ORDINAL).to(smaMapSink));
+			this.edge(Edge.from(maStats, MaStatsProcessor.EMA_ORDINAL).to(emaMapSink));
+		} else {
+			/* Simple Moving Average fork, sum and write to the SMA map
+			 */
+			Vertex sma = this.newVertex("sma", () -> new SmaProcessor(continuous, fixedPoint));
+			this.edge(Edge.from(lastN, 0).to(sma).partitioned(new AverageKeyExtractor()));
+			this.edge(Edge.between(sma, smaMapSink));
+
+			/* Exponential Moving Average fork, sum and write to the EMA map
+			 */
+			Vertex ema = this.newVertex("ema", () -> new EmaProcessor(continuous, fixedPoint));
+			this.edge(Edge.from(lastN, 1).to(ema).partitioned(new AverageKeyExtractor()));
+			this.edge(Edge.between(ema, emaMapSink));
+		}
+	}
+
+	/**
+	 * <P>The source of prices. All of them unless filtered, and as they change
+	 * if continuous.
+	 * </P>
+	 *
+	 * @param continuous For a job that never ends
+	 * @param mapName Prices by day or by month
+	 * @param filter Which prices, or {@code null} for all
+	 * @return The source vertex, added to this graph
+	 */
+	private Vertex mapSource(boolean continuous, String mapName, Predicate<?, ?> filter) {
+		if (continuous) {
+			return this.newVertex("mapSource", new MapEventProcessorSupplier(mapName, filter));
+		}
+		if (filter == null) {
+			return this.newVertex("mapSource", Processors.readMap(mapName));
+		}
+		return this.newVertex("mapSource", new FilteredMapProcessorSupplier(mapName, filter));
+	}
+
+	/**
+	 * <P>Build a query on the historic currency key, so only the prices
+	 * wanted are read.
+	 * </P>
+	 *
+	 * @param since Earliest date, or {@code null} for any
+	 * @param pairs Currency pairs, or {@code null} or empty for any
+	 * @param byMonth For the map keyed by month, where the date's month is the earliest
+	 * @return A query, or {@code null} if there's nothing to filter on
+	 */
+	@SuppressWarnings("rawtypes")
+	private static Predicate<?, ?> filter(LocalDate since, Set<CurrencyPair> pairs, boolean byMonth) {
+		List<Predicate> predicates = new ArrayList<>();
+
+		if (since != null) {
+			if (byMonth) {
+				predicates.add(Predicates.greaterEqual("__key#month", YearMonth.from(since)));
+			} else {
+				predicates.add(Predicates.greaterEqual("__key#date", since));
+			}
+		}
+		if (pairs != null && !pairs.isEmpty()) {
+			Predicate[] pairPredicates = pairs.stream()
+					.map(pair -> Predicates.and(Predicates.equal("__key#from", pair.getFrom()),
+							Predicates.equal("__key#to", pair.getTo())))
+					.toArray(Predicate[]::new);
+			predicates.add(Predicates.or(pairPredicates));
+		}
+
+		return (predicates.isEmpty() ? null : Predicates.and(predicates.toArray(new Predicate[predicates.size()])));
+	}
+
+	private static MaConfig withWindows(int[] last) {
+		MaConfig maConfig = new MaConfig();
+		maConfig.setWindows(last);
+		return maConfig;
 	}
 }
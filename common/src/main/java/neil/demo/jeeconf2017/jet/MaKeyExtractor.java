@@ -1,10 +1,8 @@
 package neil.demo.jeeconf2017.jet;
 
+import com.hazelcast.core.PartitionAware;
 import com.hazelcast.jet.Distributed;
 
-import neil.demo.jeeconf2017.domain.HistoricCurrency;
-import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
-
 import java.util.Map;
 
 /**
@@ -18,9 +16,12 @@ import java.util.Map;
  * <P>This keys data local to the JVM between intermediate stages
  * of the analysis, so reducing network hops.
  * </P>
+ * <P>Prices by day and prices by month both route on the currency pair,
+ * so either can be given.
+ * </P>
  */
 @SuppressWarnings("serial")
-public class MaKeyExtractor implements Distributed.Function<Map.Entry<HistoricCurrencyKey, HistoricCurrency>, String> {
+public class MaKeyExtractor implements Distributed.Function<Map.Entry<? extends PartitionAware<String>, ?>, String> {
 
 	/**
 	 * <P>Use the key's provided routing.
@@ -30,10 +31,8 @@ public class MaKeyExtractor implements Distributed.Function<Map.Entry<HistoricCu
 	 * @return The routing key of that entry, {@code source + target} currencies.
 	 */
 	@Override
-	public String apply(Map.Entry<HistoricCurrencyKey, HistoricCurrency> entry) {
-		HistoricCurrencyKey historicCurrencyKey = entry.getKey();
-
-		return historicCurrencyKey.getPartitionKey();
+	public String apply(Map.Entry<? extends PartitionAware<String>, ?> entry) {
+		return entry.getKey().getPartitionKey();
 	}
 
 }
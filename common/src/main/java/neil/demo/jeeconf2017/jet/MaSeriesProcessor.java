@@ -0,0 +1,269 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import com.hazelcast.jet.AbstractProcessor;
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.Traversers;
+
+import lombok.extern.slf4j.Slf4j;
+
+import neil.demo.jeeconf2017.domain.AverageSeriesKey;
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.CurrencyPair;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthKey;
+import neil.demo.jeeconf2017.util.FixedPoint;
+
+/**
+ * <P>Calculate the <B>Simple</B> and <B>Exponential Moving Average</B> as
+ * at every date in the history, not just the latest.
+ * </P>
+ * <P>Input is collected per currency pair, as dates and fixed point prices in
+ * arrays, as the {@link com.hazelcast.core.IMap IMap} gives them in no
+ * particular order. When input ends, each pair's history is sorted by date
+ * once and a {@link PriceWindow} for each window size is slid along it.
+ * The window keeps its sum up to date as each price enters and leaves, and
+ * the exponential average only looks back as far as prices still matter,
+ * so each date costs about the same whatever the window size, rather than
+ * adding up <I>n</I> prices again for every date.
+ * </P>
+ * <P>A point is only output once the window is full, the first 9 dates
+ * have no 10 day average.
+ * </P>
+ * <P>Input can also be a month of prices, a {@link HistoricCurrencyMonth},
+ * already in date order. As for {@link LastNProcessor}, prices in it before
+ * the first date wanted are skipped.
+ * </P>
+ * <P>Output is split by ordinal, as for {@link MaStatsProcessor}, simple
+ * averages to ordinal 0 and exponential to ordinal 1. Output is a pair
+ * at a time, so only one pair's series is held at once.
+ * </P>
+ */
+@Slf4j
+public class MaSeriesProcessor extends AbstractProcessor {
+
+	public static final int SMA_ORDINAL = 0;
+	public static final int EMA_ORDINAL = 1;
+
+	private final int[] windows;
+	private final boolean fixedPoint;
+	private final int since;
+	private final History[] histories = new History[CurrencyPair.count()];
+	private int nextPair;
+	private Traverser<Map.Entry<AverageSeriesKey, Object>> smaTraverser;
+	private Traverser<Map.Entry<AverageSeriesKey, Object>> emaTraverser;
+	private int count;
+	private final ProcessorMetrics processorMetrics = new ProcessorMetrics(MaSeriesProcessor.class.getSimpleName());
+
+	public MaSeriesProcessor(final int[] arg0, final boolean arg1) {
+		this(arg0, arg1, Integer.MIN_VALUE);
+	}
+
+	public MaSeriesProcessor(final int[] arg0, final boolean arg1, final int arg2) {
+		this.windows = arg0;
+		this.fixedPoint = arg1;
+		this.since = arg2;
+	}
+
+	@Override
+	protected void init(Context context) {
+		this.processorMetrics.init(context.jetInstance());
+	}
+
+	/**
+	 * <P>Add the price to its pair's history.
+	 * </P>
+	 *
+	 * @param ordinal Where this item has come from
+	 * @param item The item itself, a currency pair on a date, or in a month
+	 * @return {@code true}, always kept
+	 */
+    @Override
+    protected boolean tryProcess(int ordinal, Object item) throws IOException {
+    	long start = this.processorMetrics.start();
+
+		Map.Entry<?, ?> entry = (Map.Entry<?, ?>) item;
+
+		if (entry.getValue() instanceof HistoricCurrencyMonth) {
+			HistoricCurrencyMonthKey historicCurrencyMonthKey = (HistoricCurrencyMonthKey) entry.getKey();
+			HistoricCurrencyMonth historicCurrencyMonth = (HistoricCurrencyMonth) entry.getValue();
+
+			History history = this.history(historicCurrencyMonthKey.getFrom(), historicCurrencyMonthKey.getTo());
+			for (int i = 0; i < historicCurrencyMonth.size(); i++) {
+				if (historicCurrencyMonth.getDate(i) >= this.since) {
+					history.add(historicCurrencyMonth.getDate(i), historicCurrencyMonth.getClose(i));
+				}
+			}
+		} else {
+			HistoricCurrencyKey historicCurrencyKey = (HistoricCurrencyKey) entry.getKey();
+			HistoricCurrency historicCurrency = (HistoricCurrency) entry.getValue();
+
+			this.history(historicCurrencyKey.getFrom(), historicCurrencyKey.getTo())
+				.add((int) historicCurrencyKey.getDate().toEpochDay(), FixedPoint.toLong(historicCurrency.getClose()));
+		}
+
+		this.processorMetrics.in(start);
+		return true;
+    }
+
+    /**
+     * @param from Source currency
+     * @param to Target currency
+     * @return The pair's history, created if necessary
+     */
+    History history(Currency from, Currency to) {
+    	int index = CurrencyPair.index(from, to);
+    	if (this.histories[index] == null) {
+    		this.histories[index] = new History();
+    	}
+    	return this.histories[index];
+    }
+
+    /**
+     * <P>Calculate and output each pair's series in turn, moving to the
+     * next pair once both of the last pair's series are sent.
+     * </P>
+     *
+     * @return {@code true} once every pair is sent
+     */
+    @Override
+    public boolean complete() {
+    	long start = this.processorMetrics.start();
+    	try {
+    		while (true) {
+    			if (this.smaTraverser != null
+    					&& !(super.emitCooperatively(SMA_ORDINAL, this.smaTraverser)
+    							&& super.emitCooperatively(EMA_ORDINAL, this.emaTraverser))) {
+    				return false;
+    			}
+
+    			while (this.nextPair < this.histories.length && this.histories[this.nextPair] == null) {
+    				this.nextPair++;
+    			}
+    			if (this.nextPair == this.histories.length) {
+    				log.info("complete -> {} averages", this.count);
+    				this.processorMetrics.out(this.count);
+    				this.processorMetrics.publish();
+    				return true;
+    			}
+
+    			this.series(CurrencyPair.of(this.nextPair), this.histories[this.nextPair]);
+    			// Done with, free for garbage collection
+    			this.histories[this.nextPair] = null;
+    			this.nextPair++;
+    		}
+    	} finally {
+    		this.processorMetrics.complete(start);
+    	}
+    }
+
+    /**
+     * <P>Slide each size of window along one pair's history, in date order,
+     * and set up the traversers to send the results.
+     * </P>
+     *
+     * @param currencyPair The pair
+     * @param history All its prices, in any order
+     */
+    private void series(CurrencyPair currencyPair, History history) {
+    	List<Map.Entry<AverageSeriesKey, Object>> smaSeries = new ArrayList<>();
+    	List<Map.Entry<AverageSeriesKey, Object>> emaSeries = new ArrayList<>();
+
+    	this.series(currencyPair, history, smaSeries, emaSeries);
+
+    	this.count += smaSeries.size() + emaSeries.size();
+    	this.smaTraverser = Traversers.traverseStream(smaSeries.stream());
+    	this.emaTraverser = Traversers.traverseStream(emaSeries.stream());
+    }
+
+    /**
+     * <P>The calculation itself, apart from output, sorting the history
+     * first.
+     * </P>
+     *
+     * @param currencyPair The pair
+     * @param history All its prices, in any order
+     * @param smaSeries Simple averages are added here, by window then date
+     * @param emaSeries Exponential averages are added here, likewise
+     */
+    void series(CurrencyPair currencyPair, History history,
+    		List<Map.Entry<AverageSeriesKey, Object>> smaSeries, List<Map.Entry<AverageSeriesKey, Object>> emaSeries) {
+    	history.sort();
+
+    	for (int window : this.windows) {
+    		PriceWindow priceWindow = new PriceWindow(window);
+
+    		for (int i = 0; i < history.size; i++) {
+    			priceWindow.add(history.dates[i], history.prices[i]);
+
+    			if (priceWindow.size() == window) {
+    				AverageSeriesKey averageSeriesKey = new AverageSeriesKey(currencyPair.getFrom(), currencyPair.getTo(),
+    						window, LocalDate.ofEpochDay(history.dates[i]));
+
+    				smaSeries.add(new AbstractMap.SimpleImmutableEntry<>(averageSeriesKey,
+    						this.output(SmaProcessor.average(priceWindow))));
+    				emaSeries.add(new AbstractMap.SimpleImmutableEntry<>(averageSeriesKey,
+    						this.output(EmaProcessor.average(priceWindow))));
+    			}
+    		}
+    	}
+    }
+
+    private Object output(long average) {
+    	return (this.fixedPoint ? Long.valueOf(average) : FixedPoint.toBigDecimal(average, 2));
+    }
+
+    /**
+     * <P>One pair's prices, unordered until sorted. Arrays of primitives
+     * that double in size as needed, rather than an object per price.
+     * </P>
+     */
+    static class History {
+    	int[] dates = new int[64];
+    	long[] prices = new long[64];
+    	int size;
+
+    	void add(int date, long price) {
+    		if (this.size == this.dates.length) {
+    			this.dates = Arrays.copyOf(this.dates, this.size * 2);
+    			this.prices = Arrays.copyOf(this.prices, this.size * 2);
+    		}
+    		this.dates[this.size] = date;
+    		this.prices[this.size] = price;
+    		this.size++;
+    	}
+
+    	/**
+    	 * <P>Sort by date, moving the prices with them. Each date and its
+    	 * position are packed into one {@code long}, to sort primitives.
+    	 * </P>
+    	 */
+    	void sort() {
+    		long[] order = new long[this.size];
+    		for (int i = 0; i < this.size; i++) {
+    			order[i] = ((long) this.dates[i] << 32) | i;
+    		}
+    		Arrays.sort(order);
+
+    		int[] sortedDates = new int[this.size];
+    		long[] sortedPrices = new long[this.size];
+    		for (int i = 0; i < this.size; i++) {
+    			int j = (int) order[i];
+    			sortedDates[i] = this.dates[j];
+    			sortedPrices[i] = this.prices[j];
+    		}
+    		this.dates = sortedDates;
+    		this.prices = sortedPrices;
+    	}
+    }
+
+}
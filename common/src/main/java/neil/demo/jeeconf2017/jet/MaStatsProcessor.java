@@ -0,0 +1,135 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.hazelcast.jet.AbstractProcessor;
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.Traversers;
+
+import lombok.extern.slf4j.Slf4j;
+
+import neil.demo.jeeconf2017.domain.AverageKey;
+import neil.demo.jeeconf2017.util.FixedPoint;
+
+/**
+ * <P>Calculate the <B>Simple</B> and the <B>Exponential Moving Average</B>
+ * together, from one input.
+ * </P>
+ * <P>{@link SmaProcessor} and {@link EmaProcessor} each need the
+ * {@link PriceWindow} for a currency, so with them {@link LastNProcessor}
+ * sends every window twice, once down each edge. This processor takes
+ * each window once and works out both, with
+ * {@link SmaProcessor#average(PriceWindow)} and
+ * {@link EmaProcessor#average(PriceWindow)} so the results are the same.
+ * </P>
+ * <P>Output is split by ordinal, simple averages to ordinal 0 and
+ * exponential averages to ordinal 1, so each can have its own sink.
+ * </P>
+ */
+@Slf4j
+public class MaStatsProcessor extends AbstractProcessor {
+
+	public static final int SMA_ORDINAL = 0;
+	public static final int EMA_ORDINAL = 1;
+
+	private final boolean continuous;
+	private final boolean fixedPoint;
+	private Map<AverageKey, Object> smaAverages = new HashMap<>();
+	private Map<AverageKey, Object> emaAverages = new HashMap<>();
+	private Traverser<Map.Entry<AverageKey, Object>> smaTraverser;
+	private Traverser<Map.Entry<AverageKey, Object>> emaTraverser;
+	private final ProcessorMetrics processorMetrics = new ProcessorMetrics(MaStatsProcessor.class.getSimpleName());
+
+	public MaStatsProcessor() {
+		this(false, false);
+	}
+
+	public MaStatsProcessor(final boolean arg0, final boolean arg1) {
+		this.continuous = arg0;
+		this.fixedPoint = arg1;
+	}
+
+	@Override
+	protected void init(Context context) {
+		this.processorMetrics.init(context.jetInstance());
+	}
+
+	/**
+	 * <P>Called once per currency and window size, calculate both averages
+	 * and keep them locally, or send them on straight away if continuous.
+	 * </P>
+	 * 
+	 * @param ordinal Where this item has come from
+	 * @param item The item itself, a currency and its window of prices
+	 * @return {@code true}, an empty input set is logged and skipped
+	 */
+    @Override
+    protected boolean tryProcess(int ordinal, Object item) throws IOException {
+    	long start = this.processorMetrics.start();
+    	
+		@SuppressWarnings("unchecked")
+		Map.Entry<AverageKey, PriceWindow> entry = 
+				(Map.Entry<AverageKey, PriceWindow>) item;
+		
+		AverageKey averageKey = entry.getKey();
+		PriceWindow prices = entry.getValue();
+
+		if (prices.size() == 0) {
+			// Abandon calculation, but the item is consumed
+			log.warn("Empty set of prices for {}", averageKey);
+			this.processorMetrics.in(start);
+			return true;
+		}
+
+		Object sma = this.output(SmaProcessor.average(prices));
+		Object ema = this.output(EmaProcessor.average(prices));
+		
+		if (this.continuous) {
+			super.emit(SMA_ORDINAL, new AbstractMap.SimpleImmutableEntry<>(averageKey, sma));
+			super.emit(EMA_ORDINAL, new AbstractMap.SimpleImmutableEntry<>(averageKey, ema));
+			this.processorMetrics.out(2);
+		} else {
+			this.smaAverages.put(averageKey, sma);
+			this.emaAverages.put(averageKey, ema);
+		}
+
+		this.processorMetrics.in(start);
+		
+		return true;
+    }
+
+    /**
+     * <P>Output the averages accumulated, simple then exponential.
+     * </P>
+     * 
+     * @return {@code true} once both are sent
+     */
+    @Override
+    public boolean complete() {
+    	long start = this.processorMetrics.start();
+
+    	// Same traversers each call, in case the outbox fills
+    	if (this.smaTraverser == null) {
+    		this.smaTraverser = Traversers.traverseStream(this.smaAverages.entrySet().stream());
+    		this.emaTraverser = Traversers.traverseStream(this.emaAverages.entrySet().stream());
+    	}
+    	boolean done = super.emitCooperatively(SMA_ORDINAL, this.smaTraverser)
+    			&& super.emitCooperatively(EMA_ORDINAL, this.emaTraverser);
+
+    	this.processorMetrics.complete(start);
+    	if (done) {
+    		log.info("complete -> {}", this.smaAverages.keySet());
+    		this.processorMetrics.out(this.smaAverages.size() + this.emaAverages.size());
+    		this.processorMetrics.publish();
+    	}
+    	return done;
+    }
+
+    private Object output(long average) {
+    	return (this.fixedPoint ? Long.valueOf(average) : FixedPoint.toBigDecimal(average, 2));
+    }
+
+}
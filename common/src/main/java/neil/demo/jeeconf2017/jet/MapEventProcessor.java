@@ -0,0 +1,101 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.AbstractProcessor;
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.Traversers;
+
+import neil.demo.jeeconf2017.util.BatchWriter;
+
+/**
+ * <P>A never-ending source of map entries, the continuous equivalent of
+ * the built-in {@link com.hazelcast.jet.Processors#readMap Processors.readMap()}.
+ * </P>
+ * <P>Changes are not read from the {@link IMap} by this processor. Instead
+ * {@link MapEventProcessorSupplier} listens for changes to the map and hands
+ * them over through a queue, so all this processor has to do is pass them
+ * on downstream as they arrive.
+ * </P>
+ * <P>The entries already present when the job starts are fetched first,
+ * a batch at a time as {@link FilteredMapProcessor} does, so only one batch
+ * of values is held at once. Fetching blocks on the {@link IMap}, so this
+ * isn't cooperative.
+ * </P>
+ */
+public class MapEventProcessor extends AbstractProcessor {
+
+	private final IMap<Object, Object> iMap;
+	private final Queue<Map.Entry<?, ?>> queue = new ConcurrentLinkedQueue<>();
+	private Iterator<Object> initialKeys = Collections.emptyIterator();
+	private Traverser<Map.Entry<Object, Object>> batch;
+
+	public MapEventProcessor(final IMap<Object, Object> arg0) {
+		this.iMap = arg0;
+	}
+
+	@Override
+	public boolean isCooperative() {
+		return false;
+	}
+
+	/**
+	 * <P>Called by {@link MapEventProcessorSupplier} before this processor
+	 * is handed to Jet.
+	 * </P>
+	 *
+	 * @param keys Entries present at the start that this processor passes on
+	 */
+	void setInitialKeys(List<Object> keys) {
+		this.initialKeys = keys.iterator();
+	}
+
+	/**
+	 * <P>Called by the listener in {@link MapEventProcessorSupplier}, on
+	 * an event thread rather than a Jet thread.
+	 * </P>
+	 *
+	 * @param entry A map entry that has been added or updated
+	 */
+	void offer(Map.Entry<?, ?> entry) {
+		this.queue.offer(entry);
+	}
+
+    /**
+     * <P>Emit the entries present at the start, a batch at a time, then
+     * whatever has arrived since the last call, as much as the outbox will
+     * take.
+     * </P>
+     *
+     * @return {@code false}, a stream of events has no end
+     */
+    @Override
+    public boolean complete() {
+    	while (true) {
+    		if (this.batch != null && !super.emitCooperatively(this.batch)) {
+    			return false;
+    		}
+    		if (!this.initialKeys.hasNext()) {
+    			break;
+    		}
+
+    		Set<Object> batchKeys = new HashSet<>();
+    		while (this.initialKeys.hasNext() && batchKeys.size() < BatchWriter.DEFAULT_BATCH_SIZE) {
+    			batchKeys.add(this.initialKeys.next());
+    		}
+    		this.batch = Traversers.traverseStream(this.iMap.getAll(batchKeys).entrySet().stream());
+    	}
+
+    	super.emitCooperatively(this.queue::poll);
+    	return false;
+    }
+
+}
@@ -0,0 +1,161 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.PartitionAware;
+import com.hazelcast.jet.ProcessorSupplier;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.query.Predicate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <P>Create {@link MapEventProcessor} instances for a continuous job, and
+ * feed them with changes to an {@link IMap}.
+ * </P>
+ * <P>One instance of this supplier runs in each server JVM. It registers a
+ * <I>local</I> entry listener, so is only told about changes to the entries
+ * that JVM owns. This is the same split of the data as
+ * {@link com.hazelcast.jet.Processors#readMap Processors.readMap()} gives,
+ * so the rest of the graph doesn't need to know which source is in use.
+ * </P>
+ * <P>To start from the current state rather than from empty, the keys
+ * already present are shared out first, and each processor fetches their
+ * values a batch at a time before passing on changes as they occur. An
+ * update that races with this initial read could be seen twice, but
+ * processing downstream keys on the date so will just replace the price.
+ * </P>
+ * <P>Optionally, only entries matching a {@link Predicate} are passed on,
+ * both initially and as they change, the same filter as
+ * {@link FilteredMapProcessorSupplier} applies for a job that isn't continuous.
+ * </P>
+ */
+@SuppressWarnings("serial")
+@Slf4j
+public class MapEventProcessorSupplier implements ProcessorSupplier {
+
+	private final String mapName;
+	private final Predicate<?, ?> predicate;
+
+	private transient IMap<Object, Object> iMap;
+	private transient String listenerId;
+	private transient List<MapEventProcessor> processors;
+
+	public MapEventProcessorSupplier(final String arg0) {
+		this(arg0, null);
+	}
+
+	/**
+	 * @param arg0 Map name
+	 * @param arg1 Which entries to pass on, {@code null} for all
+	 */
+	public MapEventProcessorSupplier(final String arg0, final Predicate<?, ?> arg1) {
+		this.mapName = arg0;
+		this.predicate = arg1;
+	}
+
+	/**
+	 * <P>Find the map in the server JVM this supplier has been sent to.
+	 * </P>
+	 *
+	 * @param context Gives access to the Jet instance
+	 */
+	@Override
+	public void init(Context context) {
+		this.iMap = context.jetInstance().getHazelcastInstance().getMap(this.mapName);
+	}
+
+	/**
+	 * <P>Create the processors, start listening, then share out the keys
+	 * already present for the processors to fetch.
+	 * </P>
+	 *
+	 * @param requiredNumber How many to create
+	 * @return A collection of the required size
+	 */
+	@Override
+	public Collection<MapEventProcessor> get(int requiredNumber) {
+		this.processors = new ArrayList<>();
+		for (int i=0; i<requiredNumber; i++) {
+			this.processors.add(new MapEventProcessor(this.iMap));
+		}
+
+		Set<Object> keys;
+		if (this.predicate == null) {
+			this.listenerId = this.iMap.addLocalEntryListener(new Listener());
+			keys = this.iMap.localKeySet();
+		} else {
+			@SuppressWarnings("unchecked")
+			Predicate<Object, Object> predicate = (Predicate<Object, Object>) this.predicate;
+			this.listenerId = this.iMap.addLocalEntryListener(new Listener(), predicate, true);
+			keys = this.iMap.localKeySet(predicate);
+		}
+
+		List<List<Object>> initialKeys = new ArrayList<>();
+		for (int i=0; i<requiredNumber; i++) {
+			initialKeys.add(new ArrayList<>());
+		}
+		for (Object key : keys) {
+			initialKeys.get(route(key, requiredNumber)).add(key);
+		}
+		for (int i=0; i<requiredNumber; i++) {
+			this.processors.get(i).setInitialKeys(initialKeys.get(i));
+		}
+		log.info("get({}) -> {} initial entries", requiredNumber, keys.size());
+
+		return this.processors;
+	}
+
+	/**
+	 * <P>Stop listening when the job ends, which for a continuous job
+	 * means it was cancelled.
+	 * </P>
+	 *
+	 * @param error Why the job ended, if it failed
+	 */
+	@Override
+	public void complete(Throwable error) {
+		if (this.listenerId != null) {
+			this.iMap.removeEntryListener(this.listenerId);
+		}
+	}
+
+	/**
+	 * <P>Send all changes for the same routing key to the same processor,
+	 * so they stay in sequence.
+	 * </P>
+	 *
+	 * @param key A map key
+	 * @param count How many processors
+	 * @return Index of the processor to receive this key's changes
+	 */
+	private static int route(Object key, int count) {
+		Object routing = (key instanceof PartitionAware ? ((PartitionAware<?>) key).getPartitionKey() : key);
+		return Math.abs(routing.hashCode() % count);
+	}
+
+	/**
+	 * <P>Additions and updates are treated the same, removals are ignored.
+	 * </P>
+	 */
+	private class Listener implements EntryAddedListener<Object, Object>, EntryUpdatedListener<Object, Object> {
+
+		@Override
+		public void entryAdded(EntryEvent<Object, Object> event) {
+			processors.get(route(event.getKey(), processors.size())).offer(new AbstractMap.SimpleImmutableEntry<>(event.getKey(), event.getValue()));
+		}
+
+		@Override
+		public void entryUpdated(EntryEvent<Object, Object> event) {
+			this.entryAdded(event);
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.util.Map;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.AbstractProcessor;
+
+import neil.demo.jeeconf2017.Constants;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthKey;
+import neil.demo.jeeconf2017.util.MonthBatchWriter;
+
+/**
+ * <P>Write daily prices into the map of prices by month, the sink
+ * for {@link GesmesDAG} when storing by month.
+ * </P>
+ * <P>A month can't simply be put, as its days arrive separately, so
+ * the prices are merged into each month with a {@link MonthBatchWriter}
+ * as the client does. The edge into this processor routes on the currency
+ * pair, as the month's key does, so the merges are to this member's
+ * partitions.
+ * </P>
+ * <P>Not cooperative, as each batch waits for its merges to be done.
+ * </P>
+ */
+public class MonthWriterProcessor extends AbstractProcessor {
+
+	private MonthBatchWriter monthBatchWriter;
+
+	@Override
+	public boolean isCooperative() {
+		return false;
+	}
+
+	@Override
+	protected void init(Context context) {
+		IMap<HistoricCurrencyMonthKey, HistoricCurrencyMonth> iMap =
+				context.jetInstance().getHazelcastInstance().getMap(Constants.MAP_HISTORIC_CURRENCY_MONTH);
+		this.monthBatchWriter = new MonthBatchWriter(iMap);
+	}
+
+	/**
+	 * @param ordinal Where this item has come from
+	 * @param item A daily price from {@link GesmesProcessor}
+	 * @return {@code true}, always consumed
+	 */
+	@Override
+	protected boolean tryProcess(int ordinal, Object item) {
+		@SuppressWarnings("unchecked")
+		Map.Entry<HistoricCurrencyKey, HistoricCurrency> entry =
+				(Map.Entry<HistoricCurrencyKey, HistoricCurrency>) item;
+
+		this.monthBatchWriter.add(entry.getKey(), entry.getValue());
+		return true;
+	}
+
+	/**
+	 * <P>Write the last partial batch.
+	 * </P>
+	 *
+	 * @return {@code true}, done in one call
+	 */
+	@Override
+	public boolean complete() {
+		this.monthBatchWriter.close();
+		return true;
+	}
+
+}
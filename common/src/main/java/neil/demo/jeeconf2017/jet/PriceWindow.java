@@ -0,0 +1,302 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * <P>The last '<I>n</I>' closing prices for one currency, oldest first.
+ * </P>
+ * <P>This replaces a {@link java.util.TreeSet} of objects, one object and
+ * one tree node per price, with a pair of fixed size arrays used as a ring
+ * buffer. Dates are held as the epoch day, prices in
+ * {@link neil.demo.jeeconf2017.util.FixedPoint FixedPoint}. Nothing is
+ * allocated after construction, however many prices are added.
+ * </P>
+ * <P>Prices normally arrive in date order, so the common case is to
+ * overwrite the oldest with the newest. Prices can arrive out of order,
+ * {@link com.hazelcast.core.IMap IMap} content is unordered, so these
+ * are inserted in the right place, shuffling along the ones after.
+ * </P>
+ * <P>The window also keeps the <B>sum</B> of the prices, in fixed point
+ * so exact, adjusted as each price enters and each price leaves, so the
+ * simple average can be read at any time without visiting every price.
+ * </P>
+ * <P>The <B>exponential average</B> is the recursive one, the flat average
+ * of the oldest five as the base, then for each price after that the
+ * value so far times a weight of {@code 2/(i+1)}, rounded to 2 places,
+ * plus the price times the rest. The weights are never more than a third,
+ * so each step back from the newest multiplies the significance of the
+ * older prices by a third or less. It is calculated from the newest back,
+ * stopping once the older prices can't make a difference, so costs the
+ * same for a window of 10 or 200 prices.
+ * </P>
+ * <P>So the averages only ever need the sum, the size and the newest few
+ * dozen prices. A {@link #snapshot()} holds just those, for sending on
+ * each time a window changes, at the same cost whatever its size.
+ * </P>
+ */
+@SuppressWarnings("serial")
+public class PriceWindow implements Serializable {
+
+	// Prices averaged for the base of the exponential average
+	private static final int BASE_SIZE = 5;
+	// Significance below which older prices are ignored
+	private static final double NEGLIGIBLE = 1e-20;
+	// Most prices the exponential average reads, for any size of window
+	private static final int REACH = reach();
+
+	private final int[] dates;
+	private final long[] prices;
+	private int head;
+	private int size;
+	private long sum;
+	// Oldest prices left out of a snapshot, otherwise zero
+	private int dropped;
+
+	public PriceWindow(final int capacity) {
+		this.dates = new int[capacity];
+		this.prices = new long[capacity];
+	}
+
+	public int capacity() {
+		return this.dates.length;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param i From zero for the oldest, to {@code size() - 1} for the newest,
+	 *          and for a snapshot only those it holds
+	 * @return The epoch day of that price
+	 */
+	public int getDate(int i) {
+		return this.dates[this.slot(i)];
+	}
+
+	/**
+	 * @param i From zero for the oldest, to {@code size() - 1} for the newest,
+	 *          and for a snapshot only those it holds
+	 * @return That price, as fixed point
+	 */
+	public long getPrice(int i) {
+		return this.prices[this.slot(i)];
+	}
+
+	/**
+	 * @return Total of the prices held, as fixed point
+	 */
+	public long getSum() {
+		return this.sum;
+	}
+
+	/**
+	 * <P>The exponential moving average. The value for the prices
+	 * held is the same as calculating forwards from the oldest:
+	 * </P>
+	 * <PRE>
+	 * value = (p<sub>0</sub> + ... + p<sub>4</sub>) / 5
+	 * value = value * w<sub>i</sub> + p<sub>i</sub> * (1 - w<sub>i</sub>), for i = 5 ...
+	 * </PRE>
+	 * <P>where <I>w<sub>i</sub></I> is {@code 2/(i+1)} rounded to 2 places.
+	 * With five prices or fewer, this is the flat average.
+	 * </P>
+	 * <P>Unwinding this, price <I>p<sub>i</sub></I> contributes
+	 * {@code (1 - w[i])} times the product of the weights after it, and
+	 * the base the product of all the weights. These add up to one, so
+	 * each is applied to the difference from the newest price, which is
+	 * exact when prices don't change.
+	 * </P>
+	 *
+	 * @return The average as fixed point, but unrounded
+	 */
+	public double getExponentialAverage() {
+		int baseSize = Math.min(BASE_SIZE, this.size);
+		long newest = this.getPrice(this.size - 1);
+
+		double difference = 0;
+		double significance = 1;
+		for (int i = this.size - 1; i >= baseSize && significance >= NEGLIGIBLE; i--) {
+			int weight = weightPercent(i);
+			difference += significance * (100 - weight) / 100 * (this.getPrice(i) - newest);
+			significance *= weight / 100d;
+		}
+
+		if (significance >= NEGLIGIBLE) {
+			long baseDifference = 0;
+			for (int i = 0; i < baseSize; i++) {
+				baseDifference += this.getPrice(i) - newest;
+			}
+			difference += significance * baseDifference / baseSize;
+		}
+
+		return newest + difference;
+	}
+
+	/**
+	 * <P>Add a price, or replace the price already held for that date.
+	 * If the window is full, the oldest is dropped to make room, which
+	 * could be the price supplied if it's older than all the others.
+	 * </P>
+	 *
+	 * @param date Epoch day
+	 * @param price Fixed point
+	 * @return {@code false} if the price was too old to be kept
+	 */
+	public boolean add(int date, long price) {
+		if (this.dropped > 0) {
+			throw new IllegalStateException("Snapshot can't be added to, " + this);
+		}
+
+		// Find where it goes, searching from newest as most likely
+		int i = this.size - 1;
+		while (i >= 0 && this.getDate(i) > date) {
+			i--;
+		}
+
+		if (i >= 0 && this.getDate(i) == date) {
+			long previous = this.getPrice(i);
+			this.prices[this.slot(i)] = price;
+			this.sum += price - previous;
+			return true;
+		}
+
+		// Newest, the usual case
+		if (i == this.size - 1) {
+			if (this.size < this.capacity()) {
+				this.set(this.size, date, price);
+				this.size++;
+			} else {
+				// Full, overwrite the oldest and rotate
+				this.sum -= this.getPrice(0);
+				this.set(0, date, price);
+				this.head = this.slot(1);
+			}
+			this.sum += price;
+			return true;
+		}
+
+		// Goes after position 'i'
+		if (this.size < this.capacity()) {
+			for (int j = this.size; j > i + 1; j--) {
+				this.copy(j - 1, j);
+			}
+			this.set(i + 1, date, price);
+			this.size++;
+		} else {
+			// Full, if older than everything held then discard
+			if (i < 0) {
+				return false;
+			}
+
+			// Full, drop the oldest and move those before the insertion point down
+			this.sum -= this.getPrice(0);
+			for (int j = 0; j < i; j++) {
+				this.copy(j + 1, j);
+			}
+			this.set(i, date, price);
+		}
+
+		this.sum += price;
+		return true;
+	}
+
+	/**
+	 * <P>For sending on, while this one continues to be changed.
+	 * </P>
+	 *
+	 * @return An independent copy
+	 */
+	public PriceWindow copy() {
+		PriceWindow copy = new PriceWindow(this.capacity());
+		for (int i = 0; i < this.size; i++) {
+			copy.set(i, this.getDate(i), this.getPrice(i));
+		}
+		copy.size = this.size;
+		copy.sum = this.sum;
+		return copy;
+	}
+
+	/**
+	 * <P>For sending on to be averaged, while this one continues to be changed.
+	 * The size, sum and exponential average are the same as for this window,
+	 * but older prices the averages don't read are left out, so a window of
+	 * 200 costs no more to copy and send than a window of 30.
+	 * </P>
+	 * <P>A snapshot can't be added to.
+	 * </P>
+	 *
+	 * @return An independent, partial, copy
+	 */
+	public PriceWindow snapshot() {
+		int kept = Math.min(this.size, REACH);
+		PriceWindow snapshot = new PriceWindow(Math.max(kept, 1));
+		snapshot.dropped = this.size - kept;
+		for (int i = snapshot.dropped; i < this.size; i++) {
+			snapshot.set(i, this.getDate(i), this.getPrice(i));
+		}
+		snapshot.size = this.size;
+		snapshot.sum = this.sum;
+		return snapshot;
+	}
+
+	@Override
+	public String toString() {
+		int[] orderedDates = new int[this.size - this.dropped];
+		for (int i = this.dropped; i < this.size; i++) {
+			orderedDates[i - this.dropped] = this.getDate(i);
+		}
+		return "PriceWindow(" + this.size + "/" + this.capacity() + ", dates=" + Arrays.toString(orderedDates) + ")";
+	}
+
+	/**
+	 * <P>The weight for the value so far when adding the price at
+	 * position {@code i}, {@code 2/(i+1)} rounded half up to 2 places.
+	 * </P>
+	 *
+	 * @param i Position of the price added, from {@link #BASE_SIZE}
+	 * @return Weight in hundredths, zero from 400 prices on
+	 */
+	private static int weightPercent(int i) {
+		return (400 + i + 1) / (2 * (i + 1));
+	}
+
+	/**
+	 * <P>How far back from the newest {@link #getExponentialAverage()} reads,
+	 * found by running its loop for each size of window. Once the base is
+	 * reached, that's all the prices. From 400 prices on the weight is zero,
+	 * so larger windows read only the newest.
+	 * </P>
+	 *
+	 * @return A count of prices, around thirty
+	 */
+	private static int reach() {
+		int reach = BASE_SIZE;
+		for (int size = BASE_SIZE + 1; size <= 401; size++) {
+			int i = size - 1;
+			double significance = 1;
+			while (i >= BASE_SIZE && significance >= NEGLIGIBLE) {
+				significance *= weightPercent(i) / 100d;
+				i--;
+			}
+			reach = Math.max(reach, (significance >= NEGLIGIBLE ? size : size - 1 - i));
+		}
+		return reach;
+	}
+
+	private int slot(int i) {
+		return (this.head + i - this.dropped) % this.capacity();
+	}
+
+	private void copy(int from, int to) {
+		this.dates[this.slot(to)] = this.dates[this.slot(from)];
+		this.prices[this.slot(to)] = this.prices[this.slot(from)];
+	}
+
+	private void set(int i, int date, long price) {
+		this.dates[this.slot(i)] = date;
+		this.prices[this.slot(i)] = price;
+	}
+
+}
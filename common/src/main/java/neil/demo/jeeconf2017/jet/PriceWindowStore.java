@@ -0,0 +1,58 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.CurrencyPair;
+
+/**
+ * <P>A {@link PriceWindow} for each currency pair, all of the same size.
+ * </P>
+ * <P>There are only so many currencies and they are an {@code enum}, so
+ * rather than a hash map the windows are held in an array indexed by
+ * the {@link CurrencyPair#index(Currency, Currency) pair index}, computed
+ * from the two ordinals without creating anything. Windows are only
+ * created for pairs that have prices.
+ * </P>
+ */
+public class PriceWindowStore {
+
+	private final int capacity;
+	private final PriceWindow[] windows = new PriceWindow[CurrencyPair.count()];
+
+	public PriceWindowStore(final int arg0) {
+		this.capacity = arg0;
+	}
+
+	public int capacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @param from Source currency
+	 * @param to Target currency
+	 * @return The window for that pair, created if necessary
+	 */
+	public PriceWindow get(Currency from, Currency to) {
+		int index = CurrencyPair.index(from, to);
+		PriceWindow window = this.windows[index];
+		if (window == null) {
+			window = new PriceWindow(this.capacity);
+			this.windows[index] = window;
+		}
+		return window;
+	}
+
+	/**
+	 * @return The windows created so far, as pair/window pairs
+	 */
+	public Stream<Map.Entry<CurrencyPair, PriceWindow>> stream() {
+		return IntStream.range(0, this.windows.length)
+				.filter(i -> this.windows[i] != null)
+				.mapToObj(i -> new AbstractMap.SimpleImmutableEntry<>(CurrencyPair.of(i), this.windows[i]));
+	}
+
+}
@@ -0,0 +1,218 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.JetInstance;
+
+import neil.demo.jeeconf2017.Constants;
+import neil.demo.jeeconf2017.domain.VertexMetrics;
+
+/**
+ * <P>Counts and timings for one processor, sent to the metrics
+ * {@link IMap} to be added into the totals for its vertex.
+ * </P>
+ * <P>Counting is local and cheap, a few additions per item. Publishing
+ * is an asynchronous {@link IMap#submitToKey submitToKey()}, so nothing
+ * waits for it. A job that ends publishes at the end. Whether it ends or
+ * not, what has been counted is also published every few seconds by a
+ * timer, so a continuous job's figures are sent even once no more input
+ * is arriving, when the processor itself isn't called.
+ * </P>
+ * <P>Totals are for a run, see {@link #reset(HazelcastInstance, String...)}.
+ * A processor counts for the run current when it starts.
+ * </P>
+ * <P>Timing is off unless turned on with {@link #setTiming(boolean)}. It
+ * needs two calls to {@link System#nanoTime()} per item, which is
+ * significant next to the work done for an item, and only counts are
+ * needed to follow a job's progress.
+ * </P>
+ */
+public class ProcessorMetrics {
+
+	private static final long PUBLISH_INTERVAL_SECONDS = 5;
+
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, ProcessorMetrics.class.getSimpleName());
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static volatile boolean timing;
+
+	private final String vertex;
+	private IMap<String, VertexMetrics> metricsMap;
+	private long run;
+	private final AtomicLong itemsIn = new AtomicLong();
+	private final AtomicLong itemsOut = new AtomicLong();
+	private final AtomicLong processNanos = new AtomicLong();
+	private final AtomicLong completeNanos = new AtomicLong();
+	private final Map<String, Integer> windowSizes = new ConcurrentHashMap<>();
+	private boolean published;
+
+	public ProcessorMetrics(final String arg0) {
+		this.vertex = arg0;
+	}
+
+	/**
+	 * <P>Turn timing on or off, for processors created from now on in
+	 * this JVM.
+	 * </P>
+	 *
+	 * @param value {@code true} to time each item and each call to complete
+	 */
+	public static void setTiming(boolean value) {
+		timing = value;
+	}
+
+	/**
+	 * <P>Start the totals for some vertices from zero, for a new run of the
+	 * job they belong to. Other vertices are left alone, they may belong to
+	 * another job that is still running.
+	 * </P>
+	 * <P>Each reset starts a new run, numbered cluster-wide. Processors
+	 * started from now on count for it, and anything still sent by
+	 * processors of an earlier run is dropped when it arrives.
+	 * </P>
+	 *
+	 * @param hazelcastInstance Member or client
+	 * @param vertices Names processors publish under
+	 */
+	public static void reset(HazelcastInstance hazelcastInstance, String... vertices) {
+		long run = hazelcastInstance.getAtomicLong(Constants.ATOMIC_LONG_METRICS_RUN).incrementAndGet();
+		IMap<String, VertexMetrics> metricsMap = hazelcastInstance.getMap(Constants.MAP_METRICS);
+
+		for (String vertex : vertices) {
+			VertexMetrics vertexMetrics = new VertexMetrics();
+			vertexMetrics.setVertex(vertex);
+			vertexMetrics.setRun(run);
+			metricsMap.set(vertex, vertexMetrics);
+		}
+	}
+
+	/**
+	 * <P>Find the current run, and start publishing on the timer. The timer
+	 * only holds a weak reference, and stops once the processor has gone.
+	 * </P>
+	 *
+	 * @param jetInstance From the processor's context
+	 */
+	public void init(JetInstance jetInstance) {
+		this.metricsMap = jetInstance.getHazelcastInstance().getMap(Constants.MAP_METRICS);
+		VertexMetrics current = this.metricsMap.get(this.vertex);
+		this.run = (current == null ? 0L : current.getRun());
+		new Publisher(this).schedule();
+	}
+
+	/**
+	 * @return Pass to {@link #in(long)} or {@link #complete(long)} when done
+	 */
+	public long start() {
+		return (timing ? System.nanoTime() : 0L);
+	}
+
+	/**
+	 * @param start From {@link #start()}, before processing one input item
+	 */
+	public void in(long start) {
+		this.itemsIn.incrementAndGet();
+		if (timing) {
+			this.processNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @param count Output items emitted
+	 */
+	public void out(int count) {
+		this.itemsOut.addAndGet(count);
+	}
+
+	/**
+	 * @param start From {@link #start()}, before one call to complete
+	 */
+	public void complete(long start) {
+		if (timing) {
+			this.completeNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * @param name Currency and window capacity
+	 * @param size Prices held in that window
+	 */
+	public void windowSize(String name, int size) {
+		this.windowSizes.put(name, size);
+	}
+
+	/**
+	 * <P>Send the counts since last time, then start counting again from zero.
+	 * Called at the end of a job, and by the timer.
+	 * </P>
+	 */
+	public synchronized void publish() {
+		if (this.metricsMap == null) {
+			return;
+		}
+
+		VertexMetrics delta = new VertexMetrics();
+		delta.setVertex(this.vertex);
+		delta.setRun(this.run);
+		delta.setItemsIn(this.itemsIn.getAndSet(0));
+		delta.setItemsOut(this.itemsOut.getAndSet(0));
+		delta.setProcessNanos(this.processNanos.getAndSet(0));
+		delta.setCompleteNanos(this.completeNanos.getAndSet(0));
+		for (Map.Entry<String, Integer> entry : this.windowSizes.entrySet()) {
+			delta.getWindowSizes().put(entry.getKey(), entry.getValue());
+			// Unless changed meanwhile, in which case it goes next time
+			this.windowSizes.remove(entry.getKey(), entry.getValue());
+		}
+
+		if (!this.published) {
+			delta.setProcessors(1);
+			this.published = true;
+		} else if (delta.getItemsIn() == 0 && delta.getItemsOut() == 0
+				&& delta.getProcessNanos() == 0 && delta.getCompleteNanos() == 0 && delta.getWindowSizes().isEmpty()) {
+			return;
+		}
+
+		this.metricsMap.submitToKey(this.vertex, new VertexMetricsMerger(delta));
+	}
+
+	/**
+	 * <P>Publish every few seconds while the processor is still in use.
+	 * </P>
+	 */
+	private static class Publisher implements Runnable {
+
+		private final WeakReference<ProcessorMetrics> reference;
+		private ScheduledFuture<?> future;
+
+		Publisher(final ProcessorMetrics arg0) {
+			this.reference = new WeakReference<>(arg0);
+		}
+
+		synchronized void schedule() {
+			this.future = TIMER.scheduleWithFixedDelay(this, PUBLISH_INTERVAL_SECONDS, PUBLISH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		}
+
+		@Override
+		public synchronized void run() {
+			ProcessorMetrics processorMetrics = this.reference.get();
+			if (processorMetrics == null) {
+				this.future.cancel(false);
+			} else {
+				processorMetrics.publish();
+			}
+		}
+	}
+
+}
@@ -1,18 +1,18 @@
 package neil.demo.jeeconf2017.jet;
 
 import java.io.IOException;
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeSet;
 
 import com.hazelcast.jet.AbstractProcessor;
+import com.hazelcast.jet.Traverser;
 import com.hazelcast.jet.Traversers;
 
 import lombok.extern.slf4j.Slf4j;
 
-import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.AverageKey;
+import neil.demo.jeeconf2017.util.FixedPoint;
 
 /**
  * <P>Calculate the <B>Simple Moving Average</B>.
@@ -20,53 +20,95 @@ import neil.demo.jeeconf2017.domain.Currency;
  * <P>For a stream of input, sum them up and divide by the count.
  * </P>
  * <P>Earlier processing stages ensure we are only fed the
- * data we need to sum.
+ * data we need to sum. In fact the {@link PriceWindow} keeps
+ * a running total as prices are added and removed, so the
+ * sum is already done.
+ * </P>
+ * <P>The average is rounded to 2 decimal places, and output as a
+ * {@link java.math.BigDecimal} or as fixed point.
  * </P>
  */
 @Slf4j
 public class SmaProcessor extends AbstractProcessor {
 
-	private Map<Currency, BigDecimal> averages = new HashMap<>();
+	private final boolean continuous;
+	private final boolean fixedPoint;
+	private Map<AverageKey, Object> averages = new HashMap<>();
+	private Traverser<Map.Entry<AverageKey, Object>> outputTraverser;
+	private final ProcessorMetrics processorMetrics = new ProcessorMetrics(SmaProcessor.class.getSimpleName());
+
+	public SmaProcessor() {
+		this(false, false);
+	}
+
+	public SmaProcessor(final boolean arg0, final boolean arg1) {
+		this.continuous = arg0;
+		this.fixedPoint = arg1;
+	}
 	
+	@Override
+	protected void init(Context context) {
+		this.processorMetrics.init(context.jetInstance());
+	}
+
 	/**
-	 * <P>Called once per currency, calculate the average and keep
+	 * <P>Called once per currency and window size, calculate the average and keep
 	 * it locally.
 	 * </P>
+	 * <P>Unless continuous, where it's called each time a currency's
+	 * prices change, and the average is sent on straight away.
+	 * </P>
 	 * 
 	 * @param ordinal Where this item has come from
 	 * @param item A set of prices for a currency.
-	 * @return {@code false} if input set empty, otherwise {@code true}
+	 * @return {@code true}, an empty input set is logged and skipped
 	 */
     @Override
     protected boolean tryProcess(int ordinal, Object item) throws IOException {
+    	long start = this.processorMetrics.start();
     	
 		@SuppressWarnings("unchecked")
-		Map.Entry<Currency, TreeSet<ClosingPrice>> entry = 
-				(Map.Entry<Currency, TreeSet<ClosingPrice>>) item;
+		Map.Entry<AverageKey, PriceWindow> entry = 
+				(Map.Entry<AverageKey, PriceWindow>) item;
 		
-		Currency currency = entry.getKey();
-		TreeSet<ClosingPrice> prices = entry.getValue();
+		AverageKey averageKey = entry.getKey();
+		PriceWindow prices = entry.getValue();
 		
 		if (prices.size() == 0) {
-			// Abandon calculation
-			log.warn("Empty set of prices for {}", currency);
-			return false;
+			// Abandon calculation, but the item is consumed
+			log.warn("Empty set of prices for {}", averageKey);
+			this.processorMetrics.in(start);
+			return true;
 		}
 
-		BigDecimal divisor = new BigDecimal(prices.size());
-		BigDecimal tally = BigDecimal.ZERO;
+		long average = SmaProcessor.average(prices);
 		
-		// Add all the values
-		for (ClosingPrice lastNPrice : prices) {
-			tally = tally.add(lastNPrice.getClose());
-		}
+		Object output = (this.fixedPoint ? Long.valueOf(average) : FixedPoint.toBigDecimal(average, 2));
 		
-		// Sum and round
-		this.averages.put(currency, tally.divide(divisor, 2, RoundingMode.HALF_UP));
+		if (this.continuous) {
+			super.emit(new AbstractMap.SimpleImmutableEntry<>(averageKey, output));
+			this.processorMetrics.out(1);
+		} else {
+			this.averages.put(averageKey, output);
+		}
+
+		this.processorMetrics.in(start);
 		
 		return true;
     }
 
+    /**
+     * <P>The simple average of a window, rounded to 2 decimal places.
+     * </P>
+     *
+     * @param prices Not empty
+     * @return Fixed point
+     */
+    public static long average(PriceWindow prices) {
+		// Running total maintained by the window, fixed point so no rounding until the divide
+		return FixedPoint.divide(prices.getSum(), prices.size(), 2);
+    }
+
     /**
      * <P>Output the averages accumulated.
      * </P>
@@ -75,8 +117,21 @@ public class SmaProcessor extends AbstractProcessor {
      */
     @Override
     public boolean complete() {
-    	log.info("complete -> {}", this.averages.keySet());
-    	return super.emitCooperatively(Traversers.traverseStream(this.averages.entrySet().stream()));
+    	long start = this.processorMetrics.start();
+
+    	// Same traverser each call, in case the outbox fills
+    	if (this.outputTraverser == null) {
+    		this.outputTraverser = Traversers.traverseStream(this.averages.entrySet().stream());
+    	}
+    	boolean done = super.emitCooperatively(this.outputTraverser);
+
+    	this.processorMetrics.complete(start);
+    	if (done) {
+    		log.info("complete -> {}", this.averages.keySet());
+    		this.processorMetrics.out(this.averages.size());
+    		this.processorMetrics.publish();
+    	}
+    	return done;
     }
 
 }
@@ -0,0 +1,42 @@
+package neil.demo.jeeconf2017.jet;
+
+import java.util.Map.Entry;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+
+import neil.demo.jeeconf2017.domain.VertexMetrics;
+
+/**
+ * <P>Add one processor's counts into the totals for its vertex, where
+ * the totals are held, so no read-modify-write from the processor.
+ * </P>
+ * <P>Counts from a processor of an earlier run, such as one of a cancelled
+ * job that hasn't yet been garbage collected, are dropped rather than added
+ * to the totals for the current run.
+ * </P>
+ */
+@SuppressWarnings("serial")
+public class VertexMetricsMerger extends AbstractEntryProcessor<String, VertexMetrics> {
+
+	private final VertexMetrics delta;
+
+	public VertexMetricsMerger(final VertexMetrics arg0) {
+		this.delta = arg0;
+	}
+
+	@Override
+	public Object process(Entry<String, VertexMetrics> entry) {
+		VertexMetrics vertexMetrics = entry.getValue();
+		if (vertexMetrics == null || vertexMetrics.getRun() < this.delta.getRun()) {
+			vertexMetrics = this.delta;
+		} else if (vertexMetrics.getRun() == this.delta.getRun()) {
+			vertexMetrics.add(this.delta);
+		} else {
+			// Stale
+			return null;
+		}
+		entry.setValue(vertexMetrics);
+		return null;
+	}
+
+}
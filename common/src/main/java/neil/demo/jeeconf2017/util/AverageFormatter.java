@@ -2,70 +2,233 @@ package neil.demo.jeeconf2017.util;
 
 import java.math.BigDecimal;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.LifecycleEvent.LifecycleState;
+import com.hazelcast.core.MapEvent;
 import com.hazelcast.jet.JetInstance;
-import com.hazelcast.jet.stream.DistributedCollectors;
-import com.hazelcast.jet.stream.IStreamMap;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.map.listener.MapClearedListener;
+import com.hazelcast.map.listener.MapEvictedListener;
 
-import neil.demo.jeeconf2017.domain.Currency;
+import lombok.extern.slf4j.Slf4j;
+import neil.demo.jeeconf2017.domain.AverageKey;
 import neil.demo.jeeconf2017.domain.CurrencyAverage;
-import neil.demo.jeeconf2017.domain.CurrencyPair;
 
 /**
- * <P><B>Bonus material!</B> : Use Jet as a reformatter.
+ * <P>Read the averages for display.
  * </P>
  * <P>Output from the calculations are stored in {@link com.hazelcast.core.IMap IMap}
- * as map entries where the key is a {@link neil.demo.jeeconf2017.domain.CurrencyPair CurrencyPair}
+ * as map entries where the key is an {@link neil.demo.jeeconf2017.domain.AverageKey AverageKey}
  * and the value is a {@link java.math.BigDecimal}. We need them as collection of
  * {@link neil.demo.jeeconf2017.domain.CurrencyAverage CurrencyAverage}, and ideally
  * sorted into order, as this will make the display on a web page easier.
  * </P>
- * <P>This is an easy enough piece of reformating. We could treat the {@link com.hazelcast.core.IMap IMap}
- * as a {@link java.util.Map Map} and stream the content and reformat. This would stream the map
- * first (from as many server JVMs as we have) and then do the reformatting and collection.
+ * <P>The averages are few, one per currency and window size, and only change when a
+ * job runs, but the pages showing them are refreshed far more often than that. So
+ * rather than go to the cluster on every page view, the formatted collection is kept
+ * here and reused until an entry listener says the map has changed.
+ * </P>
+ * <P>When it has changed, the collection is rebuilt from the keys and a
+ * {@link IMap#getAll(java.util.Set) getAll()}. The client has a near cache for these
+ * maps, configured in {@code hazelcast-client.xml}, so this only fetches the values
+ * that have changed and the rest come from local memory. After a continuous job
+ * updates one currency, that is a handful of values not the whole map.
  * </P>
- * <P>Here, we use Jet's {@link com.hazelcast.jet.stream.IStreamMap} so the streaming happens in
- * a distributed way (on as many server JVMs as we have) and the initial collection is distributed too
- * (on as many servers as we have). If we were doing a filter too, to limit what is being collected,
- * it would be more efficient to filter in situ prior to transmission from server to client, rather
- * than to filter on the client.
+ * <P>Changes made while the client is disconnected, or lost with a cluster
+ * restart, send no events. So every cached collection is also discarded
+ * each time the client connects, and rebuilt when next read.
  * </P>
  */
 @Component
+@Slf4j
 public class AverageFormatter {
 
 	@Autowired
 	private JetInstance jetInstance;
+
+	private final ConcurrentMap<String, CachedAverages> cache = new ConcurrentHashMap<>();
+
+    /**
+     * <P>Discard everything cached whenever the client connects, or
+     * reconnects, as events may have been missed while it was away.
+     * </P>
+     */
+    @PostConstruct
+    public void init() {
+    	this.jetInstance.getHazelcastInstance().getLifecycleService().addLifecycleListener(event -> {
+    		if (event.getState() == LifecycleState.CLIENT_CONNECTED) {
+    			log.info("Connected, discarding {} cached maps", this.cache.size());
+    			this.cache.values().forEach(CachedAverages::invalidate);
+    		}
+    	});
+    }
 	
     /**
      * <P>Helper method to read from an {@link com.hazelcast.core.IMap IMap}
      * and reformat.
      * </P>
+     * <P>Use the formatted collection from last time if the map hasn't changed,
+     * otherwise build a new one. The first read of a map starts listening for
+     * changes to it.
+     * </P>
+     * 
+     * @param mapName "exponential" or "simple"
+     * @return A list of moving averages, not to be modified
+     */
+    public Collection<CurrencyAverage> read(String mapName) {
+
+    	CachedAverages cachedAverages = this.cache.computeIfAbsent(mapName, this::listen);
+
+    	Collection<CurrencyAverage> averages = cachedAverages.get();
+    	if (averages == null) {
+    		int generation = cachedAverages.getGeneration();
+    		averages = this.format(mapName);
+    		cachedAverages.set(generation, averages);
+    	}
+
+    	return averages;
+	}
+
+    /**
      * <P>Stream the IMap content in, format into the required class.
      * As there are no filters, in general this has the potential to
      * overflow memory. However, there is only one average per currency
-     * and only so many countries in the world, so there should not
+     * and window size and only so many countries in the world, so there should not
      * be that much data in this case.
      * </P>
      * 
      * @param mapName "exponential" or "simple"
-     * @return A list of moving averages
+     * @return A sorted list of moving averages
      */
-    public Collection<CurrencyAverage> read(String mapName) {
-    	
-    	IStreamMap<Currency, BigDecimal> streamMap = this.jetInstance.getMap(mapName);
-    	
-    	return streamMap
+    private Collection<CurrencyAverage> format(String mapName) {
+
+    	IMap<AverageKey, Object> iMap = this.jetInstance.getMap(mapName);
+
+    	// Keys from the cluster, values from the near cache if unchanged
+    	Map<AverageKey, Object> averages = iMap.getAll(iMap.keySet());
+
+    	log.debug("format({}) -> {} averages", mapName, averages.size());
+
+    	return Collections.unmodifiableCollection(
+    			averages.entrySet()
     			.stream()
 				.map(entry -> 
-					// Source currency as Euro is implied.
-					new CurrencyAverage(new CurrencyPair(Currency.EUR, entry.getKey()), entry.getValue())
+					new CurrencyAverage(entry.getKey().getCurrencyPair(),
+							entry.getKey().getWindow(), AverageFormatter.toBigDecimal(entry.getValue()))
 						)
-				.collect(DistributedCollectors.toCollection(TreeSet::new));
-	}
+				.collect(Collectors.toCollection(TreeSet::new)));
+    }
+
+    /**
+     * <P>Start listening to a map, so the cached result can be discarded
+     * when it changes. Values aren't needed, only that something happened.
+     * </P>
+     * 
+     * @param mapName "exponential" or "simple"
+     * @return An empty cache entry for that map
+     */
+    private CachedAverages listen(String mapName) {
+    	CachedAverages cachedAverages = new CachedAverages();
+    	this.jetInstance.getMap(mapName).addEntryListener(cachedAverages, false);
+    	return cachedAverages;
+    }
+
+    /**
+     * <P>Averages are stored as {@link BigDecimal} or, if the
+     * job was run that way, as {@link FixedPoint}. This is the
+     * one place fixed point is converted for display.
+     * </P>
+     * 
+     * @param average A stored average, 2 decimal places
+     * @return The same average, scale 2
+     */
+    private static BigDecimal toBigDecimal(Object average) {
+    	if (average instanceof Long) {
+    		return FixedPoint.toBigDecimal((Long) average, 2);
+    	}
+    	return (BigDecimal) average;
+    }
+
+    /**
+     * <P>The formatted averages for one map, and the listener that
+     * discards them.
+     * </P>
+     * <P>Each change moves on the generation. A result built from the map
+     * is only kept if no change happened while it was being built, otherwise
+     * it could already be out of date and nothing would discard it.
+     * </P>
+     */
+    private static class CachedAverages implements EntryAddedListener<Object, Object>,
+    	EntryUpdatedListener<Object, Object>, EntryRemovedListener<Object, Object>,
+    	EntryEvictedListener<Object, Object>, MapClearedListener, MapEvictedListener {
+
+    	private int generation;
+    	private Collection<CurrencyAverage> averages;
+
+    	synchronized Collection<CurrencyAverage> get() {
+    		return this.averages;
+    	}
+
+    	synchronized int getGeneration() {
+    		return this.generation;
+    	}
+
+    	synchronized void set(int generation, Collection<CurrencyAverage> averages) {
+    		if (this.generation == generation) {
+    			this.averages = averages;
+    		}
+    	}
+
+    	synchronized void invalidate() {
+    		this.generation++;
+    		this.averages = null;
+    	}
+
+		@Override
+		public void entryAdded(EntryEvent<Object, Object> event) {
+			this.invalidate();
+		}
+
+		@Override
+		public void entryUpdated(EntryEvent<Object, Object> event) {
+			this.invalidate();
+		}
+
+		@Override
+		public void entryRemoved(EntryEvent<Object, Object> event) {
+			this.invalidate();
+		}
+
+		@Override
+		public void entryEvicted(EntryEvent<Object, Object> event) {
+			this.invalidate();
+		}
+
+		@Override
+		public void mapCleared(MapEvent event) {
+			this.invalidate();
+		}
+
+		@Override
+		public void mapEvicted(MapEvent event) {
+			this.invalidate();
+		}
+    }
 
 }
@@ -0,0 +1,89 @@
+package neil.demo.jeeconf2017.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.hazelcast.core.IMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * <P>Write entries into an {@link IMap} in batches, rather than one
+ * network round-trip per entry.
+ * </P>
+ * <P>Entries are buffered until there are enough for a batch, then sent
+ * with {@link IMap#putAll(Map)}. Hazelcast splits a {@code putAll} by
+ * partition and sends each partition's share to its owner in parallel,
+ * so one call becomes one operation per partition rather than one per
+ * entry. Only one batch is in flight at a time, so memory is bounded by
+ * the batch size however much is loaded.
+ * </P>
+ * <P>Use in a {@code try}-with-resources so the last partial batch is
+ * written.
+ * </P>
+ */
+@Slf4j
+public class BatchWriter<K, V> implements AutoCloseable {
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private final IMap<K, V> iMap;
+	private final int batchSize;
+	private final Map<K, V> batch;
+	private int count;
+	private int batches;
+
+	public BatchWriter(final IMap<K, V> arg0) {
+		this(arg0, DEFAULT_BATCH_SIZE);
+	}
+
+	public BatchWriter(final IMap<K, V> arg0, final int arg1) {
+		if (arg1 < 1) {
+			throw new IllegalArgumentException("Batch size must be positive, not " + arg1);
+		}
+		this.iMap = arg0;
+		this.batchSize = arg1;
+		this.batch = new HashMap<>(2 * arg1);
+	}
+
+	/**
+	 * <P>Add an entry, writing the batch if it is now full.
+	 * </P>
+	 *
+	 * @param key Map key
+	 * @param value Map value
+	 */
+	public void add(K key, V value) {
+		this.batch.put(key, value);
+		this.count++;
+		if (this.batch.size() >= this.batchSize) {
+			this.flush();
+		}
+	}
+
+	/**
+	 * <P>Write whatever is buffered.
+	 * </P>
+	 */
+	public void flush() {
+		if (!this.batch.isEmpty()) {
+			this.iMap.putAll(this.batch);
+			this.batch.clear();
+			this.batches++;
+		}
+	}
+
+	/**
+	 * @return How many entries have been added, written or not
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	@Override
+	public void close() {
+		this.flush();
+		log.debug("Wrote {} entries to '{}' in {} batches", this.count, this.iMap.getName(), this.batches);
+	}
+
+}
@@ -0,0 +1,46 @@
+package neil.demo.jeeconf2017.util;
+
+import java.util.function.Function;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.ReplicatedMap;
+import com.hazelcast.map.listener.EntryAddedListener;
+
+import neil.demo.jeeconf2017.domain.CurrencyPair;
+
+/**
+ * <P>Keep a catalogue of the currency pairs in the historic currency map,
+ * so the pairs can be listed without reading every key.
+ * </P>
+ * <P>Register on each server as a <I>local</I> listener, so each insert
+ * is seen once, by the member that owns it. The catalogue is a
+ * {@link ReplicatedMap}, with a full copy on every member, so checking
+ * whether a pair is already known is a local lookup and only the first
+ * price for a pair results in a write.
+ * </P>
+ * <P>Prices are not removed, so pairs are not removed from the catalogue.
+ * </P>
+ * <P>Prices may be stored a day or a month per entry, so the pair is
+ * found from the key by a function supplied for that key type.
+ * </P>
+ */
+public class CurrencyPairListener<K, V> implements EntryAddedListener<K, V> {
+
+	private final ReplicatedMap<CurrencyPair, Boolean> currencyPairMap;
+	private final Function<K, CurrencyPair> pairOf;
+
+	public CurrencyPairListener(final ReplicatedMap<CurrencyPair, Boolean> arg0, final Function<K, CurrencyPair> arg1) {
+		this.currencyPairMap = arg0;
+		this.pairOf = arg1;
+	}
+
+	@Override
+	public void entryAdded(EntryEvent<K, V> event) {
+		CurrencyPair currencyPair = this.pairOf.apply(event.getKey());
+
+		if (!this.currencyPairMap.containsKey(currencyPair)) {
+			this.currencyPairMap.put(currencyPair, Boolean.TRUE);
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package neil.demo.jeeconf2017.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * <P>Prices held as a {@code long} count of millionths, rather than
+ * a {@link java.math.BigDecimal}.
+ * </P>
+ * <P>The European Central Bank publishes rates to at most five decimal
+ * places, so six is enough to hold any of them exactly. The largest rates
+ * are in the tens of thousands, nowhere near the limit of a {@code long}.
+ * </P>
+ */
+public class FixedPoint {
+
+	public static final int     SCALE = 6;
+
+	private static final long[] POWERS_OF_TEN = { 1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L };
+
+	/**
+	 * <P>Convert a price to fixed point.
+	 * </P>
+	 *
+	 * @param value A price, with no more than {@link #SCALE} decimal places
+	 * @return The price in millionths
+	 */
+	public static long toLong(BigDecimal value) {
+		return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	/**
+	 * <P>Divide, and round the result to fewer decimal places. Rounding
+	 * is {@link RoundingMode#HALF_UP}, the same as
+	 * {@link BigDecimal#divide(BigDecimal, int, RoundingMode)} would give.
+	 * </P>
+	 *
+	 * @param value Fixed point
+	 * @param divisor Positive
+	 * @param places Decimal places to keep, up to {@link #SCALE}
+	 * @return Fixed point, with digits after {@code places} zero
+	 */
+	public static long divide(long value, long divisor, int places) {
+		long unit = POWERS_OF_TEN[SCALE - places];
+		long quotient = (2 * Math.abs(value) + divisor * unit) / (2 * divisor * unit);
+		return Long.signum(value) * quotient * unit;
+	}
+
+	/**
+	 * <P>Round an unrounded fixed point value to fewer decimal places,
+	 * {@link RoundingMode#HALF_UP} in one step. Rounding to a whole number
+	 * of millionths first would take {@code 1.2349999996} to {@code 1.235000}
+	 * then up to {@code 1.24}, rather than down to {@code 1.23}.
+	 * </P>
+	 * <P>The whole millionths and the remainder below the places kept are
+	 * subtracted off exactly, so the comparison with a half is exact for
+	 * the {@code double} supplied.
+	 * </P>
+	 *
+	 * @param value Fixed point, but with a fraction
+	 * @param places Decimal places to keep, up to {@link #SCALE}
+	 * @return Fixed point, with digits after {@code places} zero
+	 */
+	public static long round(double value, int places) {
+		long unit = POWERS_OF_TEN[SCALE - places];
+		double magnitude = Math.abs(value);
+		long whole = (long) magnitude;
+		long rounded = whole - whole % unit;
+		if (magnitude - rounded >= unit / 2d) {
+			rounded += unit;
+		}
+		return (long) Math.signum(value) * rounded;
+	}
+
+	/**
+	 * <P>Convert a fixed point price back.
+	 * </P>
+	 *
+	 * @param value A price in millionths
+	 * @return The same price, scale {@link #SCALE}
+	 */
+	public static BigDecimal toBigDecimal(long value) {
+		return BigDecimal.valueOf(value, SCALE);
+	}
+
+	/**
+	 * <P>Convert a fixed point price back, that has already been rounded.
+	 * </P>
+	 *
+	 * @param value A price in millionths
+	 * @param places Decimal places it was rounded to
+	 * @return The same price, scale {@code places}
+	 */
+	public static BigDecimal toBigDecimal(long value, int places) {
+		return BigDecimal.valueOf(value, SCALE).setScale(places, RoundingMode.UNNECESSARY);
+	}
+
+}
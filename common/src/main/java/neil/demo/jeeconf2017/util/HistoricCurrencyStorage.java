@@ -0,0 +1,85 @@
+package neil.demo.jeeconf2017.util;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.NativeMemoryConfig;
+import com.hazelcast.instance.BuildInfoProvider;
+import com.hazelcast.memory.MemorySize;
+import com.hazelcast.memory.MemoryUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import neil.demo.jeeconf2017.Constants;
+
+/**
+ * <P>Choose how the historic currency maps, by day and by month, hold
+ * their entries on each server.
+ * </P>
+ * <UL>
+ * <LI><P>{@link InMemoryFormat#BINARY} - The default. Entries are held
+ * serialized, so each read deserializes a copy. Few objects per entry,
+ * but every query and entry processor deserializes what it looks at.
+ * </P></LI>
+ * <LI><P>{@link InMemoryFormat#OBJECT} - Entries are held deserialized.
+ * Queries and entry processors use them as they are, but there are
+ * more, longer lived, objects for the garbage collector to trace.
+ * </P></LI>
+ * <LI><P>{@link InMemoryFormat#NATIVE} - Entries are held serialized
+ * outside the Java heap, so a large history adds nothing for the garbage
+ * collector to trace. This needs Hazelcast Enterprise. Otherwise the
+ * default is used instead, with a warning.
+ * </P></LI>
+ * </UL>
+ * <P>Only the historic currency maps are changed. The other maps are
+ * small, and read whole by the client.
+ * </P>
+ */
+@Slf4j
+public class HistoricCurrencyStorage {
+
+	private static final String[] MAP_NAMES = {
+			Constants.MAP_HISTORIC_CURRENCY, Constants.MAP_HISTORIC_CURRENCY_MONTH };
+
+	/**
+	 * <P>Set the in-memory format of the historic currency maps, and
+	 * size the native memory if that's the format.
+	 * </P>
+	 *
+	 * @param config Server configuration, not yet used to start a server
+	 * @param inMemoryFormat Format wanted
+	 * @param nativeMegabytes Off-heap memory for each server, if {@code NATIVE}
+	 * @return The format used, which may not be the one wanted
+	 */
+	public static InMemoryFormat configure(Config config, InMemoryFormat inMemoryFormat, long nativeMegabytes) {
+		if (inMemoryFormat == InMemoryFormat.NATIVE && !BuildInfoProvider.getBuildInfo().isEnterprise()) {
+			log.warn("{} in-memory format needs Hazelcast Enterprise, using {}", inMemoryFormat, InMemoryFormat.BINARY);
+			inMemoryFormat = InMemoryFormat.BINARY;
+		}
+
+		if (inMemoryFormat == InMemoryFormat.NATIVE) {
+			if (nativeMegabytes < 1) {
+				throw new IllegalArgumentException("Native memory size must be positive, not " + nativeMegabytes);
+			}
+			NativeMemoryConfig nativeMemoryConfig = config.getNativeMemoryConfig();
+			nativeMemoryConfig.setEnabled(true);
+			nativeMemoryConfig.setSize(new MemorySize(nativeMegabytes, MemoryUnit.MEGABYTES));
+			nativeMemoryConfig.setAllocatorType(NativeMemoryConfig.MemoryAllocatorType.POOLED);
+		}
+
+		for (String mapName : MAP_NAMES) {
+			config.getMapConfig(mapName).setInMemoryFormat(inMemoryFormat);
+		}
+
+		log.info("Historic currency maps in-memory format {}{}", inMemoryFormat,
+				(inMemoryFormat == InMemoryFormat.NATIVE ? ", " + nativeMegabytes + "MB native memory" : ""));
+		return inMemoryFormat;
+	}
+
+	/**
+	 * @return The names of the maps configured
+	 */
+	public static String[] getMapNames() {
+		return MAP_NAMES.clone();
+	}
+
+}
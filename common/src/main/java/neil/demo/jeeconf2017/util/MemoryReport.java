@@ -0,0 +1,58 @@
+package neil.demo.jeeconf2017.util;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * <P>The heap and garbage collection figures for this JVM, from the
+ * standard platform MBeans, to see the effect of how the maps hold their
+ * entries.
+ * </P>
+ * <P>Counts and times are totals since the JVM started, so take them
+ * before and after what's being measured and subtract.
+ * </P>
+ */
+public class MemoryReport {
+
+	/**
+	 * @return Heap in use now, in megabytes, including garbage not yet collected
+	 */
+	public static long heapUsedMegabytes() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024);
+	}
+
+	/**
+	 * @return Collections so far, all collectors
+	 */
+	public static long gcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionCount)
+				.filter(count -> count > 0)
+				.sum();
+	}
+
+	/**
+	 * <P>Time spent collecting, all collectors. For a stop-the-world
+	 * collector this is the pause time, for a concurrent collector it
+	 * includes time alongside the application.
+	 * </P>
+	 *
+	 * @return Milliseconds so far
+	 */
+	public static long gcMillis() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionTime)
+				.filter(time -> time > 0)
+				.sum();
+	}
+
+	/**
+	 * @return One line per collector, its name, count and time so far
+	 */
+	public static String[] gcCollectors() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.map(gc -> String.format("%s: %,d collections, %,d ms", gc.getName(), gc.getCollectionCount(), gc.getCollectionTime()))
+				.toArray(String[]::new);
+	}
+
+}
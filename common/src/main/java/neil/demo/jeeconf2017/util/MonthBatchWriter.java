@@ -0,0 +1,116 @@
+package neil.demo.jeeconf2017.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.hazelcast.core.IMap;
+
+import lombok.extern.slf4j.Slf4j;
+
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthKey;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthMerger;
+
+/**
+ * <P>Write daily prices into the map of prices by month, in batches,
+ * as {@link BatchWriter} does for the map of daily prices.
+ * </P>
+ * <P>Prices are grouped by currency pair and month as they are added.
+ * When enough are buffered, each month's group is sent with a
+ * {@link HistoricCurrencyMonthMerger} to be merged into whatever that
+ * month already holds. The merges are sent together and then waited for, so one
+ * batch is one round-trip however many months it touches.
+ * </P>
+ * <P>Use in a {@code try}-with-resources so the last partial batch is
+ * written.
+ * </P>
+ */
+@Slf4j
+public class MonthBatchWriter implements AutoCloseable {
+
+	private final IMap<HistoricCurrencyMonthKey, HistoricCurrencyMonth> iMap;
+	private final int batchSize;
+	private final Map<HistoricCurrencyMonthKey, HistoricCurrencyMonth> batch = new HashMap<>();
+	private int batchCount;
+	private int count;
+	private int batches;
+
+	public MonthBatchWriter(final IMap<HistoricCurrencyMonthKey, HistoricCurrencyMonth> arg0) {
+		this(arg0, BatchWriter.DEFAULT_BATCH_SIZE);
+	}
+
+	public MonthBatchWriter(final IMap<HistoricCurrencyMonthKey, HistoricCurrencyMonth> arg0, final int arg1) {
+		if (arg1 < 1) {
+			throw new IllegalArgumentException("Batch size must be positive, not " + arg1);
+		}
+		this.iMap = arg0;
+		this.batchSize = arg1;
+	}
+
+	/**
+	 * <P>Add a daily price to its month, writing the batch if it is now full.
+	 * </P>
+	 *
+	 * @param key Currency pair and date
+	 * @param value Closing price
+	 */
+	public void add(HistoricCurrencyKey key, HistoricCurrency value) {
+		HistoricCurrencyMonthKey monthKey = new HistoricCurrencyMonthKey(key.getFrom(), key.getTo(), key.getDate());
+
+		this.batch.computeIfAbsent(monthKey, k -> new HistoricCurrencyMonth())
+			.put((int) key.getDate().toEpochDay(), FixedPoint.toLong(value.getClose()));
+		this.batchCount++;
+		this.count++;
+		if (this.batchCount >= this.batchSize) {
+			this.flush();
+		}
+	}
+
+	/**
+	 * <P>Merge whatever is buffered, and wait until done.
+	 * </P>
+	 */
+	public void flush() {
+		if (!this.batch.isEmpty()) {
+			List<Future<?>> futures = new ArrayList<>();
+			for (Map.Entry<HistoricCurrencyMonthKey, HistoricCurrencyMonth> entry : this.batch.entrySet()) {
+				futures.add(this.iMap.submitToKey(entry.getKey(), new HistoricCurrencyMonthMerger(entry.getValue())));
+			}
+
+			try {
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted writing to '" + this.iMap.getName() + "'", interruptedException);
+			} catch (ExecutionException executionException) {
+				throw new IllegalStateException("Failed writing to '" + this.iMap.getName() + "'", executionException.getCause());
+			}
+
+			this.batch.clear();
+			this.batchCount = 0;
+			this.batches++;
+		}
+	}
+
+	/**
+	 * @return How many prices have been added, written or not
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	@Override
+	public void close() {
+		this.flush();
+		log.debug("Wrote {} prices to '{}' in {} batches", this.count, this.iMap.getName(), this.batches);
+	}
+
+}
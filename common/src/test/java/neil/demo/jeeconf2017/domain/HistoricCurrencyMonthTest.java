@@ -0,0 +1,73 @@
+package neil.demo.jeeconf2017.domain;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * <P>
+ * Test a month of prices stays in date order, with one price per date,
+ * however prices are added.
+ * </P>
+ */
+public class HistoricCurrencyMonthTest {
+
+	@Test
+	public void test_put() {
+		HistoricCurrencyMonth historicCurrencyMonth = new HistoricCurrencyMonth();
+
+		historicCurrencyMonth.put(5, 50);
+		historicCurrencyMonth.put(2, 20);
+		historicCurrencyMonth.put(4, 40);
+		historicCurrencyMonth.put(9, 90);
+		assertDates(historicCurrencyMonth, 2, 4, 5, 9);
+
+		// Same date replaces
+		historicCurrencyMonth.put(4, 41);
+		assertDates(historicCurrencyMonth, 2, 4, 5, 9);
+		assertThat("Replaced", historicCurrencyMonth.getClose(1), equalTo(41L));
+	}
+
+	@Test
+	public void test_merge() {
+		HistoricCurrencyMonth historicCurrencyMonth = new HistoricCurrencyMonth();
+		historicCurrencyMonth.put(1, 10);
+		historicCurrencyMonth.put(3, 30);
+		historicCurrencyMonth.put(5, 50);
+
+		HistoricCurrencyMonth additions = new HistoricCurrencyMonth();
+		additions.put(2, 20);
+		additions.put(3, 31);
+		additions.put(6, 60);
+
+		historicCurrencyMonth.merge(additions);
+
+		assertDates(historicCurrencyMonth, 1, 2, 3, 5, 6);
+		assertThat("Added wins", historicCurrencyMonth.getClose(2), equalTo(31L));
+		assertThat("Newest", historicCurrencyMonth.getClose(4), equalTo(60L));
+		assertDates(additions, 2, 3, 6);
+	}
+
+	@Test
+	public void test_merge_into_empty() {
+		HistoricCurrencyMonth historicCurrencyMonth = new HistoricCurrencyMonth();
+
+		HistoricCurrencyMonth additions = new HistoricCurrencyMonth();
+		additions.put(7, 70);
+		additions.put(8, 80);
+
+		historicCurrencyMonth.merge(additions);
+
+		assertDates(historicCurrencyMonth, 7, 8);
+		assertThat("Oldest", historicCurrencyMonth.getClose(0), equalTo(70L));
+	}
+
+	private static void assertDates(HistoricCurrencyMonth historicCurrencyMonth, int... dates) {
+		assertThat("Size", historicCurrencyMonth.size(), equalTo(dates.length));
+		for (int i = 0; i < dates.length; i++) {
+			assertThat("Date " + i, historicCurrencyMonth.getDate(i), equalTo(dates[i]));
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package neil.demo.jeeconf2017.jet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.junit.Test;
+
+import neil.demo.jeeconf2017.util.FixedPoint;
+
+/**
+ * <P>
+ * Test the exponential average from a {@link PriceWindow} is the same,
+ * to the penny, as the original calculation forwards from the oldest
+ * price in {@link BigDecimal}.
+ * </P>
+ */
+public class EmaProcessorTest {
+
+	private static final int[] WINDOWS = { 6, 7, 10, 15, 16, 50, 80, 200, 250, 450 };
+	private static final long[] LEVELS = { 1_123_400L, 7_438_100L, 126_450_000L, 1_287_530_000L, 15_432_100_000L };
+
+	@Test
+	public void test_random_walk() {
+		Random random = new Random(2017);
+
+		for (int window : WINDOWS) {
+			for (long level : LEVELS) {
+				for (int run = 0; run < 20; run++) {
+					PriceWindow priceWindow = new PriceWindow(window);
+					long price = level;
+					// Fill, then slide a few times
+					for (int date = 1; date <= window + 5; date++) {
+						price += (random.nextInt(2001) - 1000) * (level / 1_000_000) * 10;
+						priceWindow.add(date, price);
+						assertAverage(priceWindow);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void test_unchanging() {
+		for (int window : WINDOWS) {
+			PriceWindow priceWindow = new PriceWindow(window);
+			for (int date = 1; date <= window; date++) {
+				priceWindow.add(date, 1_235_000L);
+			}
+			assertThat("Window " + window, EmaProcessor.average(priceWindow), equalTo(1_240_000L));
+			assertAverage(priceWindow);
+		}
+	}
+
+	@Test
+	public void test_out_of_order() {
+		Random random = new Random(5);
+		PriceWindow priceWindow = new PriceWindow(10);
+
+		for (int i = 0; i < 100; i++) {
+			priceWindow.add(random.nextInt(30), 1_000_000L + random.nextInt(100_000) * 10);
+			if (priceWindow.size() >= 6) {
+				assertAverage(priceWindow);
+			}
+		}
+	}
+
+	private static void assertAverage(PriceWindow priceWindow) {
+		if (priceWindow.size() < 6) {
+			return;
+		}
+		BigDecimal expected = original(priceWindow);
+		BigDecimal actual = FixedPoint.toBigDecimal(EmaProcessor.average(priceWindow), 2);
+		assertThat(priceWindow.toString(), actual, equalTo(expected));
+	}
+
+	/**
+	 * <P>The calculation as it was, before windows were kept in
+	 * {@link PriceWindow}.
+	 * </P>
+	 *
+	 * @param priceWindow At least six prices
+	 * @return Exponential average, scale 2
+	 */
+	private static BigDecimal original(PriceWindow priceWindow) {
+		BigDecimal FIVE = new BigDecimal(5);
+		BigDecimal tally = BigDecimal.ZERO;
+		int i=0;
+		for (; i<5; i++) {
+			tally = tally.add(FixedPoint.toBigDecimal(priceWindow.getPrice(i)));
+		}
+
+		BigDecimal value = tally.divide(FIVE);
+		BigDecimal TWO = new BigDecimal(2);
+
+		for ( ; i<priceWindow.size() ; i++) {
+			BigDecimal divisor = new BigDecimal(i + 1);
+			BigDecimal weight = TWO.divide(divisor, 2, RoundingMode.HALF_UP);
+
+			BigDecimal previous = value.multiply(weight);
+			BigDecimal current = FixedPoint.toBigDecimal(priceWindow.getPrice(i)).multiply(BigDecimal.ONE.subtract(weight));
+			value = current.add(previous);
+		}
+
+		return value.setScale(2, RoundingMode.HALF_UP);
+	}
+
+}
@@ -0,0 +1,145 @@
+package neil.demo.jeeconf2017.jet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import neil.demo.jeeconf2017.domain.AverageSeriesKey;
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.CurrencyPair;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthKey;
+import neil.demo.jeeconf2017.util.FixedPoint;
+
+/**
+ * <P>
+ * Test prices given in no particular order, as the map gives them, are
+ * sorted into each pair's history, and that averages are only output
+ * for dates with a full window behind them, the same as for a window
+ * filled in date order.
+ * </P>
+ */
+public class MaSeriesProcessorTest {
+
+	private static final LocalDate FIRST = LocalDate.of(2017, 1, 1);
+	private static final int DAYS = 30;
+	private static final int[] WINDOWS = { 5, 10, 50 };
+
+	@Test
+	public void test_out_of_order() throws Exception {
+		MaSeriesProcessor maSeriesProcessor = new MaSeriesProcessor(WINDOWS, true);
+		feed(maSeriesProcessor, new Random(2017));
+
+		for (Currency[] pair : new Currency[][] { { Currency.EUR, Currency.USD }, { Currency.EUR, Currency.GBP } }) {
+			MaSeriesProcessor.History history = maSeriesProcessor.history(pair[0], pair[1]);
+			history.sort();
+
+			assertThat("Size " + pair[1], history.size, equalTo(DAYS));
+			for (int i = 0; i < DAYS; i++) {
+				int date = (int) FIRST.plusDays(i).toEpochDay();
+				assertThat("Date " + i, history.dates[i], equalTo(date));
+				assertThat("Price " + i, history.prices[i], equalTo(price(pair[1], date)));
+			}
+		}
+	}
+
+	@Test
+	public void test_full_windows() throws Exception {
+		MaSeriesProcessor maSeriesProcessor = new MaSeriesProcessor(WINDOWS, true);
+		feed(maSeriesProcessor, new Random(5));
+
+		List<Map.Entry<AverageSeriesKey, Object>> smaSeries = new ArrayList<>();
+		List<Map.Entry<AverageSeriesKey, Object>> emaSeries = new ArrayList<>();
+		maSeriesProcessor.series(CurrencyPair.of(Currency.EUR, Currency.USD),
+				maSeriesProcessor.history(Currency.EUR, Currency.USD), smaSeries, emaSeries);
+
+		// No point before the window is full, none for 50 days from 30
+		assertThat("Simple", smaSeries.size(), equalTo((DAYS - 5 + 1) + (DAYS - 10 + 1)));
+		assertThat("Exponential", emaSeries.size(), equalTo(smaSeries.size()));
+
+		int i = 0;
+		for (int window : new int[] { 5, 10 }) {
+			for (int day = window - 1; day < DAYS; day++, i++) {
+				LocalDate date = FIRST.plusDays(day);
+				PriceWindow expected = new PriceWindow(window);
+				for (int j = day - window + 1; j <= day; j++) {
+					int earlier = (int) FIRST.plusDays(j).toEpochDay();
+					expected.add(earlier, price(Currency.USD, earlier));
+				}
+
+				AverageSeriesKey averageSeriesKey = smaSeries.get(i).getKey();
+				assertThat("Window " + i, averageSeriesKey.getWindow(), equalTo(window));
+				assertThat("Date " + i, averageSeriesKey.getDate(), equalTo(date));
+				assertThat("Key " + i, emaSeries.get(i).getKey(), equalTo(averageSeriesKey));
+				assertThat("Simple " + averageSeriesKey, smaSeries.get(i).getValue(),
+						equalTo((Object) SmaProcessor.average(expected)));
+				assertThat("Exponential " + averageSeriesKey, emaSeries.get(i).getValue(),
+						equalTo((Object) EmaProcessor.average(expected)));
+			}
+		}
+	}
+
+	@Test
+	public void test_month_since() throws Exception {
+		int since = (int) FIRST.plusDays(10).toEpochDay();
+		MaSeriesProcessor maSeriesProcessor = new MaSeriesProcessor(WINDOWS, true, since);
+
+		HistoricCurrencyMonth historicCurrencyMonth = new HistoricCurrencyMonth();
+		for (int day = 0; day < DAYS; day++) {
+			int date = (int) FIRST.plusDays(day).toEpochDay();
+			historicCurrencyMonth.put(date, price(Currency.USD, date));
+		}
+		maSeriesProcessor.tryProcess(0, new AbstractMap.SimpleImmutableEntry<>(
+				new HistoricCurrencyMonthKey(Currency.EUR, Currency.USD, FIRST), historicCurrencyMonth));
+
+		MaSeriesProcessor.History history = maSeriesProcessor.history(Currency.EUR, Currency.USD);
+		assertThat("Size", history.size, equalTo(DAYS - 10));
+		assertThat("First", history.dates[0], equalTo(since));
+	}
+
+	/**
+	 * <P>Every day for two pairs, shuffled together.
+	 * </P>
+	 */
+	private static void feed(MaSeriesProcessor maSeriesProcessor, Random random) throws Exception {
+		List<Map.Entry<HistoricCurrencyKey, HistoricCurrency>> entries = new ArrayList<>();
+		for (Currency to : new Currency[] { Currency.USD, Currency.GBP }) {
+			for (int day = 0; day < DAYS; day++) {
+				HistoricCurrencyKey historicCurrencyKey = new HistoricCurrencyKey();
+				historicCurrencyKey.setFrom(Currency.EUR);
+				historicCurrencyKey.setTo(to);
+				historicCurrencyKey.setDate(FIRST.plusDays(day));
+
+				HistoricCurrency historicCurrency = new HistoricCurrency();
+				historicCurrency.setClose(FixedPoint.toBigDecimal(price(to, (int) FIRST.plusDays(day).toEpochDay())));
+
+				entries.add(new AbstractMap.SimpleImmutableEntry<>(historicCurrencyKey, historicCurrency));
+			}
+		}
+		Collections.shuffle(entries, random);
+
+		for (Map.Entry<HistoricCurrencyKey, HistoricCurrency> entry : entries) {
+			assertTrue(entry.getKey().toString(), maSeriesProcessor.tryProcess(0, entry));
+		}
+	}
+
+	/**
+	 * <P>A price that varies by date and pair, to the penny.
+	 * </P>
+	 */
+	private static long price(Currency to, int date) {
+		return (to == Currency.USD ? 1_000_000L : 800_000L) + (date * 7_919L) % 100_000L / 100 * 100;
+	}
+
+}
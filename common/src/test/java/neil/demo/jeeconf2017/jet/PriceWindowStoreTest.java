@@ -0,0 +1,55 @@
+package neil.demo.jeeconf2017.jet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.CurrencyPair;
+
+/**
+ * <P>
+ * Test prices for the same target currency from different sources
+ * are kept apart.
+ * </P>
+ */
+public class PriceWindowStoreTest {
+
+	@Test
+	public void test_pairs_separate() {
+		PriceWindowStore priceWindowStore = new PriceWindowStore(3);
+
+		priceWindowStore.get(Currency.EUR, Currency.USD).add(1, 10);
+		priceWindowStore.get(Currency.GBP, Currency.USD).add(1, 20);
+		priceWindowStore.get(Currency.USD, Currency.GBP).add(1, 30);
+
+		assertThat("EUR->USD", priceWindowStore.get(Currency.EUR, Currency.USD).getSum(), equalTo(10L));
+		assertThat("GBP->USD", priceWindowStore.get(Currency.GBP, Currency.USD).getSum(), equalTo(20L));
+		assertThat("USD->GBP", priceWindowStore.get(Currency.USD, Currency.GBP).getSum(), equalTo(30L));
+
+		List<CurrencyPair> pairs = priceWindowStore.stream().map(entry -> entry.getKey()).collect(Collectors.toList());
+		assertThat("Pairs", pairs.size(), equalTo(3));
+		assertTrue("Has GBP->USD", pairs.contains(CurrencyPair.of(Currency.GBP, Currency.USD)));
+	}
+
+	@Test
+	public void test_pair_index() {
+		int count = 0;
+		for (Currency from : Currency.values()) {
+			for (Currency to : Currency.values()) {
+				CurrencyPair currencyPair = CurrencyPair.of(from, to);
+
+				assertThat("From", currencyPair.getFrom(), equalTo(from));
+				assertThat("To", currencyPair.getTo(), equalTo(to));
+				assertThat("Same instance", CurrencyPair.of(currencyPair.index()), sameInstance(currencyPair));
+				count++;
+			}
+		}
+		assertThat("Count", CurrencyPair.count(), equalTo(count));
+	}
+
+}
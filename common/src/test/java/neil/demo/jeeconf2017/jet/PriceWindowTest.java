@@ -0,0 +1,129 @@
+package neil.demo.jeeconf2017.jet;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * <P>
+ * Test the ring buffer keeps the newest prices in date order, whatever
+ * order they are added in.
+ * </P>
+ */
+public class PriceWindowTest {
+
+	@Test
+	public void test_in_order() {
+		PriceWindow priceWindow = new PriceWindow(3);
+
+		for (int date = 1; date <= 5; date++) {
+			assertTrue("Add " + date, priceWindow.add(date, date * 10));
+		}
+
+		assertDates(priceWindow, 3, 4, 5);
+		assertThat("Newest price", priceWindow.getPrice(2), equalTo(50L));
+	}
+
+	@Test
+	public void test_out_of_order() {
+		PriceWindow priceWindow = new PriceWindow(3);
+
+		assertTrue("Add 5", priceWindow.add(5, 50));
+		assertTrue("Add 2", priceWindow.add(2, 20));
+		assertTrue("Add 4", priceWindow.add(4, 40));
+		assertDates(priceWindow, 2, 4, 5);
+
+		// Full, 3 is newer than 2 so displaces it
+		assertTrue("Add 3", priceWindow.add(3, 30));
+		assertDates(priceWindow, 3, 4, 5);
+
+		// Full, 1 is older than everything so is discarded
+		assertFalse("Add 1", priceWindow.add(1, 10));
+		assertDates(priceWindow, 3, 4, 5);
+		assertThat("Oldest price", priceWindow.getPrice(0), equalTo(30L));
+	}
+
+	@Test
+	public void test_replace() {
+		PriceWindow priceWindow = new PriceWindow(3);
+
+		for (int date = 1; date <= 4; date++) {
+			priceWindow.add(date, date * 10);
+		}
+		assertTrue("Replace 3", priceWindow.add(3, 33));
+
+		assertDates(priceWindow, 2, 3, 4);
+		assertThat("Replaced price", priceWindow.getPrice(1), equalTo(33L));
+	}
+
+	@Test
+	public void test_copy() {
+		PriceWindow priceWindow = new PriceWindow(3);
+
+		for (int date = 1; date <= 4; date++) {
+			priceWindow.add(date, date * 10);
+		}
+		PriceWindow copy = priceWindow.copy();
+		priceWindow.add(5, 50);
+
+		assertDates(copy, 2, 3, 4);
+		assertDates(priceWindow, 3, 4, 5);
+	}
+
+	@Test
+	public void test_snapshot() {
+		for (int window : new int[] { 3, 10, 26, 27, 28, 29, 50, 200, 450 }) {
+			PriceWindow priceWindow = new PriceWindow(window);
+			for (int date = 1; date <= window + 3; date++) {
+				priceWindow.add(date, 1_000_000L + (date * 7_919L) % 100_000L);
+			}
+
+			PriceWindow snapshot = priceWindow.snapshot();
+			priceWindow.add(window + 4, 2_000_000L);
+
+			assertThat("Size " + window, snapshot.size(), equalTo(window));
+			assertTrue("Held " + window, snapshot.capacity() <= Math.min(window, 30));
+			assertThat("Newest " + window, snapshot.getDate(window - 1), equalTo(window + 3));
+			PriceWindow copy = new PriceWindow(window);
+			for (int date = 4; date <= window + 3; date++) {
+				copy.add(date, 1_000_000L + (date * 7_919L) % 100_000L);
+			}
+			assertThat("Sum " + window, snapshot.getSum(), equalTo(copy.getSum()));
+			assertThat("Exponential average " + window,
+					snapshot.getExponentialAverage(), equalTo(copy.getExponentialAverage()));
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void test_snapshot_add() {
+		PriceWindow priceWindow = new PriceWindow(50);
+		for (int date = 1; date <= 50; date++) {
+			priceWindow.add(date, date * 10);
+		}
+
+		priceWindow.snapshot().add(51, 510);
+	}
+
+	@Test
+	public void test_running_totals() {
+		PriceWindow priceWindow = new PriceWindow(3);
+
+		// Too few for exponential weighting, the base is the flat average
+		priceWindow.add(1, 40);
+		priceWindow.add(2, 80);
+		priceWindow.add(4, 100);
+		priceWindow.add(3, 60);
+		priceWindow.add(5, 70);
+
+		assertThat("Sum", priceWindow.getSum(), equalTo(230L));
+		assertEquals("Exponential average", 230 / 3d, priceWindow.getExponentialAverage(), 1e-9);
+	}
+
+	private static void assertDates(PriceWindow priceWindow, int... dates) {
+		assertThat("Size", priceWindow.size(), equalTo(dates.length));
+		for (int i = 0; i < dates.length; i++) {
+			assertThat("Date " + i, priceWindow.getDate(i), equalTo(dates[i]));
+		}
+	}
+}
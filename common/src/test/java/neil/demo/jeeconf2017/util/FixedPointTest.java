@@ -0,0 +1,52 @@
+package neil.demo.jeeconf2017.util;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.junit.Test;
+
+/**
+ * <P>
+ * Test rounding of fixed point values is the same as {@link BigDecimal}
+ * rounding {@link RoundingMode#HALF_UP}, particularly either side of a half.
+ * </P>
+ */
+public class FixedPointTest {
+
+	@Test
+	public void test_round_just_below_half() {
+		// 1.2349999996, a fraction of a millionth below the half
+		assertThat("Below half", FixedPoint.round(1_234_999.9996, 2), equalTo(1_230_000L));
+		assertThat("Below half, negative", FixedPoint.round(-1_234_999.9996, 2), equalTo(-1_230_000L));
+		assertThat("Below half, 4 places", FixedPoint.round(1_234_549.6, 4), equalTo(1_234_500L));
+	}
+
+	@Test
+	public void test_round_half() {
+		assertThat("Half", FixedPoint.round(1_235_000.0, 2), equalTo(1_240_000L));
+		assertThat("Half, negative", FixedPoint.round(-1_235_000.0, 2), equalTo(-1_240_000L));
+		assertThat("Above half", FixedPoint.round(1_235_000.0004, 2), equalTo(1_240_000L));
+		assertThat("Whole", FixedPoint.round(1_230_000.0, 2), equalTo(1_230_000L));
+	}
+
+	@Test
+	public void test_round_as_big_decimal() {
+		double[] values = { 7_674_999.999435252, 1.5, 4_999.9, 15_432_104_999.99, 999_995_000.0 };
+
+		for (double value : values) {
+			long expected = new BigDecimal(value).movePointLeft(FixedPoint.SCALE)
+					.setScale(2, RoundingMode.HALF_UP).movePointRight(FixedPoint.SCALE).longValueExact();
+			assertThat(String.valueOf(value), FixedPoint.round(value, 2), equalTo(expected));
+		}
+	}
+
+	@Test
+	public void test_divide() {
+		assertThat("Half", FixedPoint.divide(2_470_000L, 2, 2), equalTo(1_240_000L));
+		assertThat("Below half", FixedPoint.divide(2_469_999L, 2, 2), equalTo(1_230_000L));
+	}
+
+}
@@ -0,0 +1,74 @@
+package neil.demo.jeeconf2017;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.monitor.LocalMapStats;
+
+import neil.demo.jeeconf2017.util.HistoricCurrencyStorage;
+import neil.demo.jeeconf2017.util.MemoryReport;
+
+/**
+ * <P>Show this server's memory use in JMX, for JConsole or similar, to
+ * compare the in-memory formats set by {@link MyServerConfig}.
+ * </P>
+ * <P>Unlike {@link MetricsMBean} these are for this server only, the
+ * heap and collectors are per JVM, and the map figures are for the
+ * entries this server owns.
+ * </P>
+ */
+@Component
+@ManagedResource(objectName="neil.demo.jeeconf2017:type=Memory", description="Heap, garbage collection and map memory")
+public class MemoryMBean {
+
+	@Autowired
+	private HazelcastInstance hazelcastInstance;
+
+	@ManagedAttribute(description="Heap in use, MB")
+	public long getHeapUsedMegabytes() {
+		return MemoryReport.heapUsedMegabytes();
+	}
+
+	@ManagedAttribute(description="Collections so far")
+	public long getGcCount() {
+		return MemoryReport.gcCount();
+	}
+
+	@ManagedAttribute(description="Time collecting so far, ms")
+	public long getGcMillis() {
+		return MemoryReport.gcMillis();
+	}
+
+	@ManagedAttribute(description="Count and time per collector")
+	public String[] getGcCollectors() {
+		return MemoryReport.gcCollectors();
+	}
+
+	/**
+	 * <P>The heap cost is the memory Hazelcast estimates it is using for
+	 * the entries, and their backups, on this server. For {@code NATIVE}
+	 * the entries aren't on the heap, so don't count.
+	 * </P>
+	 *
+	 * @return One line per historic currency map
+	 */
+	@ManagedAttribute(description="In-memory format, owned entries and heap cost per historic currency map")
+	public String[] getHistoricCurrencyMaps() {
+		return Arrays.stream(HistoricCurrencyStorage.getMapNames())
+				.map(mapName -> {
+					LocalMapStats localMapStats = this.hazelcastInstance.getMap(mapName).getLocalMapStats();
+					return String.format("%s: %s, %,d entries, %,d bytes heap cost",
+							mapName,
+							this.hazelcastInstance.getConfig().getMapConfig(mapName).getInMemoryFormat(),
+							localMapStats.getOwnedEntryCount(),
+							localMapStats.getHeapCost());
+				})
+				.toArray(String[]::new);
+	}
+
+}
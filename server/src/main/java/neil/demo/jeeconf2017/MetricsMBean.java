@@ -0,0 +1,50 @@
+package neil.demo.jeeconf2017;
+
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+
+import neil.demo.jeeconf2017.domain.VertexMetrics;
+
+/**
+ * <P>Show the Jet vertex metrics in JMX, for JConsole or similar.
+ * </P>
+ * <P>The metrics are held in an {@link IMap} so they are the same whichever
+ * server is asked, and are totals for the whole cluster.
+ * </P>
+ */
+@Component
+@ManagedResource(objectName="neil.demo.jeeconf2017:type=Metrics", description="Jet vertex metrics")
+public class MetricsMBean {
+
+	@Autowired
+	private HazelcastInstance hazelcastInstance;
+
+	/**
+	 * @return One line per vertex, in name order
+	 */
+	@ManagedAttribute(description="Counts and timings per vertex")
+	public String[] getVertexMetrics() {
+		return new TreeSet<>(this.getMetricsMap().values())
+				.stream()
+				.map(VertexMetrics::toString)
+				.toArray(String[]::new);
+	}
+
+	@ManagedOperation(description="Clear all metrics")
+	public void reset() {
+		this.getMetricsMap().clear();
+	}
+
+	private IMap<String, VertexMetrics> getMetricsMap() {
+		return this.hazelcastInstance.getMap(Constants.MAP_METRICS);
+	}
+
+}
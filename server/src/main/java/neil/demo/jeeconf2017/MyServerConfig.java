@@ -1,14 +1,28 @@
 package neil.demo.jeeconf2017;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import com.hazelcast.config.ClasspathXmlConfig;
 import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.ReplicatedMap;
 import com.hazelcast.jet.Jet;
 import com.hazelcast.jet.JetInstance;
 import com.hazelcast.jet.config.JetConfig;
+import com.hazelcast.query.TruePredicate;
+
+import neil.demo.jeeconf2017.domain.CurrencyPair;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthKey;
+import neil.demo.jeeconf2017.jet.ProcessorMetrics;
+import neil.demo.jeeconf2017.util.CurrencyPairListener;
+import neil.demo.jeeconf2017.util.HistoricCurrencyStorage;
 
 /**
  * <P>Work with Spring Boot 1.5.3. Future versions may autobuild some
@@ -24,23 +38,41 @@ public class MyServerConfig {
 	/**
 	 * <P>Load configuration for Hazelcast server from an XML file.
 	 * </P>
+	 * <P>Then set how the historic currency maps hold their entries, from
+	 * {@code storage.in-memory-format} and {@code storage.native-memory-mb},
+	 * so this can be changed per server without editing the XML. See
+	 * {@link MemoryMBean} for the effect on the heap and garbage collection.
+	 * </P>
 	 * 
+	 * @param inMemoryFormat {@code BINARY}, {@code OBJECT} or {@code NATIVE}
+	 * @param nativeMegabytes Off-heap memory, if {@code NATIVE}
 	 * @return Configuration object, built from XML
 	 */
 	@Bean
-	public Config config() {
-		return new ClasspathXmlConfig("hazelcast.xml");
+	public Config config(@Value("${storage.in-memory-format:BINARY}") InMemoryFormat inMemoryFormat,
+			@Value("${storage.native-memory-mb:512}") long nativeMegabytes) {
+		Config config = new ClasspathXmlConfig("hazelcast.xml");
+
+		HistoricCurrencyStorage.configure(config, inMemoryFormat, nativeMegabytes);
+
+		return config;
 	}
 	
 	/**
 	 * <P>Return a Hazelcast Jet server as a Spring bean.
 	 * </P>
+	 * <P>Processors in jobs run here count items in and out. Set
+	 * {@code metrics.timing} to also time them, at some cost per item.
+	 * </P>
 	 * 
 	 * @param config Created above
+	 * @param timing {@code true} to time processing in Jet jobs
 	 * @return A Hazelcast Jet server
 	 */
 	@Bean
-	public JetInstance jetInstance(Config config) {
+	public JetInstance jetInstance(Config config, @Value("${metrics.timing:false}") boolean timing) {
+		ProcessorMetrics.setTiming(timing);
+
 		JetConfig jetConfig = new JetConfig();
 		
 		jetConfig.setHazelcastConfig(config);
@@ -51,13 +83,35 @@ public class MyServerConfig {
 	/**
 	 * <P>Return a Hazelcast IMDG server as a Spring bean.
 	 * </P>
+	 * <P>Before returning it, start maintaining the catalogue of currency
+	 * pairs from this server's share of the historic currency maps, by day
+	 * and by month. The listeners are registered without values, so
+	 * inserts aren't deserialized just to find the pair from the key.
+	 * </P>
 	 * 
 	 * @param jetInstance Created above
 	 * @return A Hazelcast IMDG server, enriched with Jet
 	 */
 	@Bean
+	@SuppressWarnings("unchecked")
 	public HazelcastInstance hazelcastInstance(JetInstance jetInstance) {
-		return jetInstance.getHazelcastInstance();
+		HazelcastInstance hazelcastInstance = jetInstance.getHazelcastInstance();
+
+		IMap<HistoricCurrencyKey, HistoricCurrency> historicCurrencyMap
+			= hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY);
+		ReplicatedMap<CurrencyPair, Boolean> currencyPairMap
+			= hazelcastInstance.getReplicatedMap(Constants.REPLICATED_MAP_CURRENCY_PAIR);
+
+		IMap<HistoricCurrencyMonthKey, HistoricCurrencyMonth> historicCurrencyMonthMap
+			= hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY_MONTH);
+
+		// Every entry, but without its value, only the key is needed for the pair
+		historicCurrencyMap.addLocalEntryListener(new CurrencyPairListener<HistoricCurrencyKey, HistoricCurrency>(currencyPairMap,
+				key -> CurrencyPair.of(key.getFrom(), key.getTo())), TruePredicate.INSTANCE, false);
+		historicCurrencyMonthMap.addLocalEntryListener(new CurrencyPairListener<HistoricCurrencyMonthKey, HistoricCurrencyMonth>(currencyPairMap,
+				key -> CurrencyPair.of(key.getFrom(), key.getTo())), TruePredicate.INSTANCE, false);
+
+		return hazelcastInstance;
 	}
 
 }
@@ -0,0 +1,170 @@
+package neil.demo.jeeconf2017;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.hazelcast.config.ClasspathXmlConfig;
+import com.hazelcast.config.Config;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
+
+import neil.demo.jeeconf2017.domain.Currency;
+import neil.demo.jeeconf2017.domain.HistoricCurrency;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyKey;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonth;
+import neil.demo.jeeconf2017.domain.HistoricCurrencyMonthKey;
+
+/**
+ * <P>
+ * Test the indexes in {@code hazelcast.xml} on an embedded member, that
+ * queries by target currency and by date or month range, named with
+ * {@code __key#} as the indexes are, return the right prices.
+ * </P>
+ */
+public class HistoricCurrencyIndexTest {
+
+	private static final LocalDate FIRST = LocalDate.of(2017, 1, 1);
+	private static final LocalDate LAST = LocalDate.of(2017, 3, 31);
+	private static final Currency[][] PAIRS = {
+			{ Currency.EUR, Currency.USD },
+			{ Currency.EUR, Currency.GBP },
+			{ Currency.GBP, Currency.USD },
+	};
+
+	private static HazelcastInstance hazelcastInstance;
+
+	@BeforeClass
+	public static void beforeClass() {
+		Config config = new ClasspathXmlConfig("hazelcast.xml");
+		config.getNetworkConfig().getJoin().getTcpIpConfig().setEnabled(false);
+		hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+
+		IMap<HistoricCurrencyKey, HistoricCurrency> historicCurrencyMap =
+				hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY);
+		IMap<HistoricCurrencyMonthKey, HistoricCurrencyMonth> historicCurrencyMonthMap =
+				hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY_MONTH);
+
+		Map<HistoricCurrencyMonthKey, HistoricCurrencyMonth> months = new HashMap<>();
+		for (Currency[] pair : PAIRS) {
+			for (LocalDate date = FIRST; !date.isAfter(LAST); date = date.plusDays(1)) {
+				HistoricCurrencyKey historicCurrencyKey = new HistoricCurrencyKey();
+				historicCurrencyKey.setFrom(pair[0]);
+				historicCurrencyKey.setTo(pair[1]);
+				historicCurrencyKey.setDate(date);
+				HistoricCurrency historicCurrency = new HistoricCurrency();
+				historicCurrency.setClose(new BigDecimal("1.2345"));
+				historicCurrencyMap.set(historicCurrencyKey, historicCurrency);
+
+				months.computeIfAbsent(new HistoricCurrencyMonthKey(pair[0], pair[1], date), k -> new HistoricCurrencyMonth())
+					.put((int) date.toEpochDay(), 1_234_500L);
+			}
+		}
+		historicCurrencyMonthMap.putAll(months);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		hazelcastInstance.shutdown();
+	}
+
+	@Test
+	public void test_indexes_configured() {
+		assertThat(Constants.MAP_HISTORIC_CURRENCY, indexes(Constants.MAP_HISTORIC_CURRENCY),
+				equalTo(new TreeSet<>(Arrays.asList("__key#date ordered", "__key#to"))));
+		assertThat(Constants.MAP_HISTORIC_CURRENCY_MONTH, indexes(Constants.MAP_HISTORIC_CURRENCY_MONTH),
+				equalTo(new TreeSet<>(Arrays.asList("__key#month ordered", "__key#to"))));
+	}
+
+	@Test
+	public void test_to() {
+		Set<String> actual = days(Predicates.equal("__key#to", Currency.USD));
+
+		assertThat("EUR and GBP to USD", actual.size(), equalTo(2 * 90));
+		assertThat("EUR to GBP excluded", actual.stream().anyMatch(key -> key.startsWith("EURGBP")), equalTo(false));
+	}
+
+	@Test
+	public void test_date_between() {
+		Set<String> actual = days(pair(Currency.EUR, Currency.USD,
+				Predicates.between("__key#date", LocalDate.of(2017, 2, 27), LocalDate.of(2017, 3, 2))));
+
+		assertThat(actual, equalTo(expected("EURUSD", LocalDate.of(2017, 2, 27), LocalDate.of(2017, 3, 2))));
+	}
+
+	@Test
+	public void test_date_since_and_until() {
+		Set<String> since = days(pair(Currency.GBP, Currency.USD,
+				Predicates.greaterEqual("__key#date", LocalDate.of(2017, 3, 29))));
+		Set<String> until = days(pair(Currency.GBP, Currency.USD,
+				Predicates.lessEqual("__key#date", LocalDate.of(2017, 1, 3))));
+
+		assertThat("Since", since, equalTo(expected("GBPUSD", LocalDate.of(2017, 3, 29), LAST)));
+		assertThat("Until", until, equalTo(expected("GBPUSD", FIRST, LocalDate.of(2017, 1, 3))));
+	}
+
+	@Test
+	public void test_month_between() {
+		IMap<HistoricCurrencyMonthKey, HistoricCurrencyMonth> historicCurrencyMonthMap =
+				hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY_MONTH);
+
+		Set<HistoricCurrencyMonthKey> actual = historicCurrencyMonthMap.keySet(pair(Currency.EUR, Currency.GBP,
+				Predicates.between("__key#month", YearMonth.of(2017, 2), YearMonth.of(2017, 3))));
+
+		assertThat(new TreeSet<>(actual), equalTo(new TreeSet<>(Arrays.asList(
+				new HistoricCurrencyMonthKey(Currency.EUR, Currency.GBP, YearMonth.of(2017, 2)),
+				new HistoricCurrencyMonthKey(Currency.EUR, Currency.GBP, YearMonth.of(2017, 3))))));
+		assertThat("A month per entry", historicCurrencyMonthMap.get(actual.iterator().next()).size(),
+				anyOf(equalTo(28), equalTo(31)));
+	}
+
+	private static Set<String> indexes(String mapName) {
+		return hazelcastInstance.getConfig().getMapConfig(mapName).getMapIndexConfigs().stream()
+				.map(mapIndexConfig -> mapIndexConfig.getAttribute() + (mapIndexConfig.isOrdered() ? " ordered" : ""))
+				.collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static Predicate pair(Currency from, Currency to, Predicate range) {
+		return Predicates.and(Predicates.equal("__key#from", from), Predicates.equal("__key#to", to), range);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Set<String> days(@SuppressWarnings("rawtypes") Predicate predicate) {
+		IMap<HistoricCurrencyKey, HistoricCurrency> historicCurrencyMap =
+				hazelcastInstance.getMap(Constants.MAP_HISTORIC_CURRENCY);
+
+		return historicCurrencyMap.keySet(predicate).stream()
+				.map(HistoricCurrencyIndexTest::format)
+				.collect(Collectors.toCollection(TreeSet::new));
+	}
+
+	private static Set<String> expected(String pair, LocalDate since, LocalDate until) {
+		Set<String> expected = new TreeSet<>();
+		for (LocalDate date = since; !date.isAfter(until); date = date.plusDays(1)) {
+			expected.add(pair + date);
+		}
+		return expected;
+	}
+
+	private static String format(HistoricCurrencyKey key) {
+		return key.getFrom().name() + key.getTo().name() + key.getDate();
+	}
+
+}